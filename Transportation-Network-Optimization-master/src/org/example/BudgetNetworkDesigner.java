@@ -0,0 +1,254 @@
+package org.example;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Picks new roads under a construction budget so that people get to a facility faster. Accessibility is
+ * the population-weighted travel time from every node to its nearest Facility node over the existing
+ * roads plus the chosen ones, with unreachable nodes and longer trips counted at MAX_MINUTES.
+ * The solver is a lazy (CELF) greedy on time saved per million EGP: a road's last gain is taken as a bound
+ * on its next one, so only the roads at the top of the queue are evaluated again after each pick, a batch
+ * at a time in parallel. A gain is measured by a search over the current facility times that only visits
+ * the nodes the road would speed up, and a chosen road is folded into the FacilityCoverage by its
+ * incremental repair, so no step searches the whole network again.
+ * Accessibility gains are not submodular, so the lazy queue is a heuristic: a road can gain more once
+ * another is built, either because one of its ends got faster or because what it speeds up can now drive
+ * on over the new road. Roads with an end the last pick sped up are evaluated again at once; roads that
+ * only profit through the new road keep their old, too low gain until they come up, and may be passed over.
+ * As for any budgeted greedy, the result is compared with the best single affordable road.
+ */
+public class BudgetNetworkDesigner {
+    private static final double FREE_FLOW_SPEED = 60.0;
+    // Trips to a facility count as at most this many minutes, so that connecting a cut-off area has a finite gain
+    public static final double MAX_MINUTES = 180.0;
+    // Stale roads re-evaluated together from the top of the queue
+    private static final int BATCH = Math.max(1, Runtime.getRuntime().availableProcessors() * 2);
+
+    /**
+     * The chosen new roads in the order they were picked; the mean times are population-weighted minutes to
+     * the nearest facility before and after building them.
+     */
+    public record Plan(List<Road> roads, double totalCost, double meanMinutesBefore, double meanMinutesAfter,
+                       int evaluations) {}
+
+    private final RoadGraph graph;
+    private final double[] population;
+    private final double totalPopulation;
+    private final List<String> facilityIds;
+    // Per edge travel time in minutes if the road were built
+    private final double[] minutes;
+    // One edge per planned road
+    private final int[] candidates;
+    // Per edge, the index of its road in candidates, or -1 for existing roads
+    private final int[] candidateOf;
+
+    public BudgetNetworkDesigner(Map<String, Node> nodes, List<Road> roads) {
+        this.graph = RoadGraph.build(nodes, roads, false);
+        this.population = new double[graph.nodeCount()];
+        for (int v = 0; v < population.length; v++) {
+            Node node = nodes.get(graph.nodeId(v));
+            if (node != null && node.getPopulation() != null) population[v] = node.getPopulation();
+        }
+        this.totalPopulation = Arrays.stream(population).sum();
+        this.facilityIds = nodes.values().stream()
+                .filter(n -> "Facility".equals(n.getType()))
+                .map(Node::getId)
+                .collect(Collectors.toList());
+        this.minutes = new double[graph.edgeCount()];
+        for (int e = 0; e < minutes.length; e++) {
+            minutes[e] = graph.length(e) / FREE_FLOW_SPEED * 60;
+        }
+        this.candidates = IntStream.range(0, graph.edgeCount())
+                .filter(e -> e < graph.reverse(e) && !graph.road(e).isExisting())
+                .toArray();
+        this.candidateOf = new int[graph.edgeCount()];
+        Arrays.fill(candidateOf, -1);
+        for (int c = 0; c < candidates.length; c++) {
+            candidateOf[candidates[c]] = c;
+            candidateOf[graph.reverse(candidates[c])] = c;
+        }
+    }
+
+    // A candidate road in the lazy queue; gain is exact in the round it was evaluated and taken as a bound after
+    private static final class Entry {
+        final int candidate;
+        double gain;
+        int round;
+
+        Entry(int candidate) {
+            this.candidate = candidate;
+        }
+    }
+
+    /** The roads to build for at most budget million EGP, which must be finite and not negative. */
+    public Plan plan(double budget) {
+        if (!(budget >= 0) || Double.isInfinite(budget)) {
+            throw new IllegalArgumentException("Budget must be finite and not negative: " + budget);
+        }
+        double[] weights = new double[graph.edgeCount()];
+        for (int e = 0; e < weights.length; e++) {
+            weights[e] = graph.road(e).isExisting() ? minutes[e] : Double.POSITIVE_INFINITY;
+        }
+        FacilityCoverage coverage = FacilityCoverage.build(graph, weights, new EdgeMask(graph), facilityIds);
+        double before = objective(coverage.getTimes());
+        if (coverage.getFacilities().length == 0 || totalPopulation == 0) {
+            return new Plan(List.of(), 0, before / Math.max(totalPopulation, 1), before / Math.max(totalPopulation, 1), 0);
+        }
+
+        Entry[] live = new Entry[candidates.length];
+        List<Entry> affordable = new ArrayList<>();
+        for (int c = 0; c < candidates.length; c++) {
+            if (cost(c) > budget) continue;
+            live[c] = new Entry(c);
+            affordable.add(live[c]);
+        }
+        double[] times = coverage.getTimes();
+        evaluate(affordable, 0, times, weights);
+        int evaluations = affordable.size();
+        // Gains change as roads are built, so the best single road is kept by value
+        int bestSingle = -1;
+        double bestSingleGain = 0;
+        for (Entry entry : affordable) {
+            if (entry.gain > bestSingleGain) {
+                bestSingle = entry.candidate;
+                bestSingleGain = entry.gain;
+            }
+        }
+
+        // An entry whose road was picked, dropped or evaluated again is no longer live and is skipped when polled
+        PriorityQueue<Entry> queue = new PriorityQueue<>(Comparator
+                .comparingDouble((Entry entry) -> -ratio(entry))
+                .thenComparingInt(entry -> entry.candidate));
+        queue.addAll(affordable);
+        List<Integer> chosen = new ArrayList<>();
+        double spent = 0, saved = 0;
+        int round = 0;
+        while (!queue.isEmpty()) {
+            Entry top = queue.poll();
+            if (live[top.candidate] != top) continue;
+            if (cost(top.candidate) > budget - spent) { // the budget only shrinks
+                live[top.candidate] = null;
+                continue;
+            }
+            if (top.round == round) {
+                // Every other entry's last gain is no better
+                if (top.gain <= 0) break;
+                live[top.candidate] = null;
+                chosen.add(top.candidate);
+                spent += cost(top.candidate);
+                saved += top.gain;
+                round++;
+
+                // Roads with an end that got faster are the likeliest to gain more than before, so they are
+                // evaluated again straight away; see the class comment for the ones that are not
+                List<Integer> improved = new ArrayList<>();
+                gain(top.candidate, times, weights, improved);
+                build(top.candidate, coverage, weights);
+                List<Entry> touched = new ArrayList<>();
+                for (int u : improved) {
+                    for (int e = graph.firstEdge(u); e < graph.lastEdge(u); e++) {
+                        int c = candidateOf[e];
+                        if (c < 0 || live[c] == null || live[c].round == round) continue;
+                        live[c] = new Entry(c);
+                        touched.add(live[c]);
+                    }
+                }
+                evaluate(touched, round, times, weights);
+                evaluations += touched.size();
+                queue.addAll(touched);
+                continue;
+            }
+
+            List<Entry> batch = new ArrayList<>();
+            batch.add(top);
+            while (batch.size() < BATCH && !queue.isEmpty() && queue.peek().round != round) {
+                Entry next = queue.poll();
+                if (live[next.candidate] == next) batch.add(next);
+            }
+            evaluate(batch, round, times, weights);
+            evaluations += batch.size();
+            queue.addAll(batch);
+        }
+
+        if (bestSingle >= 0 && bestSingleGain > saved) {
+            chosen = List.of(bestSingle);
+            spent = cost(bestSingle);
+            saved = bestSingleGain;
+        }
+        List<Road> roads = chosen.stream().map(c -> graph.road(candidates[c])).collect(Collectors.toList());
+        return new Plan(roads, spent, before / totalPopulation, (before - saved) / totalPopulation, evaluations);
+    }
+
+    private void evaluate(List<Entry> entries, int round, double[] times, double[] weights) {
+        entries.parallelStream().forEach(entry -> {
+            entry.gain = gain(entry.candidate, times, weights, null);
+            entry.round = round;
+        });
+    }
+
+    private double cost(int candidate) {
+        return graph.road(candidates[candidate]).getCost();
+    }
+
+    private double ratio(Entry entry) {
+        return entry.gain / Math.max(cost(entry.candidate), 1e-9);
+    }
+
+    private void build(int candidate, FacilityCoverage coverage, double[] weights) {
+        int edge = candidates[candidate];
+        for (int e : new int[]{edge, graph.reverse(edge)}) {
+            weights[e] = minutes[e];
+            coverage.setWeight(e, minutes[e]);
+        }
+    }
+
+    private double objective(double[] times) {
+        double total = 0;
+        for (int v = 0; v < times.length; v++) {
+            total += population[v] * Math.min(times[v], MAX_MINUTES);
+        }
+        return total;
+    }
+
+    /**
+     * Population-weighted minutes saved if the candidate road were built on top of the current times.
+     * Reads times and weights only, so candidates can be evaluated on several threads at once.
+     * If improved is given, the nodes that would get faster are added to it.
+     */
+    private double gain(int candidate, double[] times, double[] weights, List<Integer> improved) {
+        SearchWorkspace ws = SearchWorkspace.get(graph, SearchWorkspace.FORWARD);
+        IndexedHeap heap = ws.heap();
+        int edge = candidates[candidate];
+        for (int e : new int[]{edge, graph.reverse(edge)}) {
+            int u = graph.target(graph.reverse(e));
+            double t = times[graph.target(e)] + minutes[e];
+            if (t < Math.min(times[u], MAX_MINUTES) && (!ws.reached(u) || t < ws.time(u))) {
+                ws.set(u, t, 0, e);
+                heap.insertOrDecrease(u, t);
+            }
+        }
+
+        double gain = 0;
+        while (!heap.isEmpty()) {
+            int u = heap.poll();
+            double tu = ws.time(u);
+            if (improved != null) improved.add(u);
+            gain += population[u] * (Math.min(times[u], MAX_MINUTES) - tu);
+            for (int e = graph.firstEdge(u); e < graph.lastEdge(u); e++) {
+                int into = graph.reverse(e);
+                double w = weights[into];
+                if (w == Double.POSITIVE_INFINITY) continue;
+                int v = graph.target(e);
+                double t = tu + w;
+                // Only nodes that get faster, and only up to the cap, change the objective
+                if (t >= Math.min(times[v], MAX_MINUTES)) continue;
+                if (ws.reached(v) && t >= ws.time(v)) continue;
+                ws.set(v, t, 0, into);
+                heap.insertOrDecrease(v, t);
+            }
+        }
+        return gain;
+    }
+}
@@ -0,0 +1,458 @@
+package org.example;
+
+import java.util.*;
+
+/**
+ * Contraction Hierarchy over a RoadGraph for one fixed set of edge weights (one time-of-day period).
+ * Preprocessing contracts nodes from least to most important and adds shortcut arcs where needed;
+ * queries then only walk upwards in the node order from both ends.
+ * Closures are not part of the hierarchy, so routes with closed roads must use Dijkstra instead.
+ */
+public class ContractionHierarchy {
+    private static final int WITNESS_SETTLE_LIMIT = 500;
+    private static final int SIMULATION_SETTLE_LIMIT = 50;
+
+    private final RoadGraph graph;
+    private final int[] rank;
+
+    // All arcs, original and shortcut. A shortcut u -> w via v is made of the arcs childA (u -> v) and childB (v -> w).
+    private final int[] arcTarget;
+    private final int[] arcSource;
+    private final double[] arcWeight;
+    private final int[] arcEdge;
+    private final int[] childA;
+    private final int[] childB;
+
+    // Upward arcs by source (forward search) and downward arcs by target (backward search), in CSR form
+    private final int[] upOffsets;
+    private final int[] upArcs;
+    private final int[] downOffsets;
+    private final int[] downArcs;
+
+    private final ThreadLocal<QueryState> queryState;
+
+    private ContractionHierarchy(RoadGraph graph, int[] rank, ArcList arcs) {
+        this.graph = graph;
+        this.rank = rank;
+        int m = arcs.size;
+        this.arcSource = Arrays.copyOf(arcs.source, m);
+        this.arcTarget = Arrays.copyOf(arcs.target, m);
+        this.arcWeight = Arrays.copyOf(arcs.weight, m);
+        this.arcEdge = Arrays.copyOf(arcs.edge, m);
+        this.childA = Arrays.copyOf(arcs.childA, m);
+        this.childB = Arrays.copyOf(arcs.childB, m);
+
+        int n = graph.nodeCount();
+        upOffsets = new int[n + 1];
+        downOffsets = new int[n + 1];
+        for (int a = 0; a < m; a++) {
+            if (rank[arcSource[a]] < rank[arcTarget[a]]) {
+                upOffsets[arcSource[a] + 1]++;
+            } else {
+                downOffsets[arcTarget[a] + 1]++;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            upOffsets[i + 1] += upOffsets[i];
+            downOffsets[i + 1] += downOffsets[i];
+        }
+        upArcs = new int[upOffsets[n]];
+        downArcs = new int[downOffsets[n]];
+        int[] upNext = Arrays.copyOf(upOffsets, n);
+        int[] downNext = Arrays.copyOf(downOffsets, n);
+        for (int a = 0; a < m; a++) {
+            if (rank[arcSource[a]] < rank[arcTarget[a]]) {
+                upArcs[upNext[arcSource[a]]++] = a;
+            } else {
+                downArcs[downNext[arcTarget[a]]++] = a;
+            }
+        }
+        queryState = ThreadLocal.withInitial(() -> new QueryState(n));
+    }
+
+    /**
+     * Builds the hierarchy for one period using the same travel times as Dijkstra.findShortestPath.
+     */
+    public static ContractionHierarchy forPeriod(RoadGraph graph, Period period, TrafficFlowStore trafficFlow) {
+        return build(graph, Dijkstra.edgeTimes(period, trafficFlow));
+    }
+
+    /**
+     * Contracts every node of the graph. Edges with an infinite weight are left out.
+     */
+    public static ContractionHierarchy build(RoadGraph graph, double[] weights) {
+        int n = graph.nodeCount();
+        ArcList arcs = new ArcList(graph.edgeCount());
+        IntLists out = new IntLists(n);
+        IntLists in = new IntLists(n);
+        for (int u = 0; u < n; u++) {
+            for (int e = graph.firstEdge(u); e < graph.lastEdge(u); e++) {
+                int v = graph.target(e);
+                if (weights[e] == Double.POSITIVE_INFINITY || v == u) continue;
+                int a = arcs.add(u, v, weights[e], e, -1, -1);
+                out.add(u, a);
+                in.add(v, a);
+            }
+        }
+
+        Contractor contractor = new Contractor(n, arcs, out, in);
+        int[] contractedNeighbors = new int[n];
+        IndexedHeap order = new IndexedHeap(n);
+        for (int v = 0; v < n; v++) {
+            order.insert(v, contractor.priority(v, contractedNeighbors[v]));
+        }
+
+        int[] rank = new int[n];
+        int next = 0;
+        while (!order.isEmpty()) {
+            int v = order.poll();
+            // Lazy update: the stored priority may be stale since neighbours were contracted
+            double priority = contractor.priority(v, contractedNeighbors[v]);
+            if (!order.isEmpty() && priority > order.peekKey()) {
+                order.insert(v, priority);
+                continue;
+            }
+            rank[v] = next++;
+            contractor.contract(v);
+            for (int i = 0; i < out.size[v]; i++) {
+                contractedNeighbors[arcs.target[out.items[v][i]]]++;
+            }
+            for (int i = 0; i < in.size[v]; i++) {
+                contractedNeighbors[arcs.source[in.items[v][i]]]++;
+            }
+            contractor.detach(v);
+        }
+
+        return new ContractionHierarchy(graph, rank, arcs);
+    }
+
+    public RoadGraph getGraph() { return graph; }
+
+    /**
+     * Shortest path query, returning the route unpacked into original graph nodes.
+     */
+    public Dijkstra.PathResult findShortestPath(String start, String end) {
+        int source = graph.indexOf(start);
+        int target = graph.indexOf(end);
+        if (source < 0 || target < 0) {
+            return new Dijkstra.PathResult(Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, new ArrayList<>(List.of(end)));
+        }
+        if (source == target) {
+            return new Dijkstra.PathResult(0.0, 0.0, new ArrayList<>(List.of(start)));
+        }
+
+        QueryState q = queryState.get();
+        q.reset();
+        q.visit(source, true, 0.0, -1);
+        q.visit(target, false, 0.0, -1);
+        q.forward.insert(source, 0.0);
+        q.backward.insert(target, 0.0);
+
+        double best = Double.POSITIVE_INFINITY;
+        int meetingNode = -1;
+        while (!q.forward.isEmpty() || !q.backward.isEmpty()) {
+            // Each side can stop on its own once its smallest key cannot beat the best meeting
+            if (!q.forward.isEmpty() && q.forward.peekKey() >= best) q.forward.clear();
+            if (!q.backward.isEmpty() && q.backward.peekKey() >= best) q.backward.clear();
+            boolean forwardTurn;
+            if (q.forward.isEmpty() && q.backward.isEmpty()) break;
+            else if (q.forward.isEmpty()) forwardTurn = false;
+            else if (q.backward.isEmpty()) forwardTurn = true;
+            else forwardTurn = q.forward.peekKey() <= q.backward.peekKey();
+
+            if (forwardTurn) {
+                int u = q.forward.poll();
+                if (q.backwardDist[u] != Double.POSITIVE_INFINITY && q.forwardDist[u] + q.backwardDist[u] < best) {
+                    best = q.forwardDist[u] + q.backwardDist[u];
+                    meetingNode = u;
+                }
+                for (int i = upOffsets[u]; i < upOffsets[u + 1]; i++) {
+                    int a = upArcs[i];
+                    int w = arcTarget[a];
+                    double d = q.forwardDist[u] + arcWeight[a];
+                    if (d < q.forwardDist[w]) {
+                        q.visit(w, true, d, a);
+                        q.forward.insertOrDecrease(w, d);
+                    }
+                }
+            } else {
+                int u = q.backward.poll();
+                if (q.forwardDist[u] != Double.POSITIVE_INFINITY && q.forwardDist[u] + q.backwardDist[u] < best) {
+                    best = q.forwardDist[u] + q.backwardDist[u];
+                    meetingNode = u;
+                }
+                for (int i = downOffsets[u]; i < downOffsets[u + 1]; i++) {
+                    int a = downArcs[i];
+                    int w = arcSource[a];
+                    double d = q.backwardDist[u] + arcWeight[a];
+                    if (d < q.backwardDist[w]) {
+                        q.visit(w, false, d, a);
+                        q.backward.insertOrDecrease(w, d);
+                    }
+                }
+            }
+        }
+
+        if (meetingNode < 0) {
+            return new Dijkstra.PathResult(Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, new ArrayList<>(List.of(end)));
+        }
+
+        // Collect the hierarchy arcs from start to end, then expand shortcuts into graph edges
+        Deque<Integer> upward = new ArrayDeque<>();
+        for (int u = meetingNode; q.forwardArc[u] != -1; u = arcSource[q.forwardArc[u]]) {
+            upward.push(q.forwardArc[u]);
+        }
+        List<Integer> route = new ArrayList<>(upward);
+        for (int u = meetingNode; q.backwardArc[u] != -1; u = arcTarget[q.backwardArc[u]]) {
+            route.add(q.backwardArc[u]);
+        }
+
+        List<String> path = new ArrayList<>();
+        path.add(start);
+        double distance = 0;
+        Deque<Integer> stack = new ArrayDeque<>();
+        for (int arc : route) {
+            stack.push(arc);
+            while (!stack.isEmpty()) {
+                int a = stack.pop();
+                if (childA[a] == -1) {
+                    distance += graph.length(arcEdge[a]);
+                    path.add(graph.nodeId(arcTarget[a]));
+                } else {
+                    stack.push(childB[a]);
+                    stack.push(childA[a]);
+                }
+            }
+        }
+        return new Dijkstra.PathResult(distance, best, path);
+    }
+
+    /** Growable arc storage used while contracting. */
+    private static class ArcList {
+        int[] source, target, edge, childA, childB;
+        double[] weight;
+        int size;
+
+        ArcList(int capacity) {
+            capacity = Math.max(capacity, 16);
+            source = new int[capacity];
+            target = new int[capacity];
+            edge = new int[capacity];
+            childA = new int[capacity];
+            childB = new int[capacity];
+            weight = new double[capacity];
+        }
+
+        int add(int from, int to, double w, int e, int a, int b) {
+            if (size == source.length) {
+                int capacity = size * 2;
+                source = Arrays.copyOf(source, capacity);
+                target = Arrays.copyOf(target, capacity);
+                edge = Arrays.copyOf(edge, capacity);
+                childA = Arrays.copyOf(childA, capacity);
+                childB = Arrays.copyOf(childB, capacity);
+                weight = Arrays.copyOf(weight, capacity);
+            }
+            source[size] = from;
+            target[size] = to;
+            weight[size] = w;
+            edge[size] = e;
+            childA[size] = a;
+            childB[size] = b;
+            return size++;
+        }
+    }
+
+    /** One growable int list per node, holding the arcs that touch uncontracted neighbours. */
+    private static class IntLists {
+        final int[][] items;
+        final int[] size;
+
+        IntLists(int n) {
+            items = new int[n][];
+            size = new int[n];
+            for (int i = 0; i < n; i++) items[i] = new int[4];
+        }
+
+        void add(int node, int value) {
+            if (size[node] == items[node].length) {
+                items[node] = Arrays.copyOf(items[node], size[node] * 2);
+            }
+            items[node][size[node]++] = value;
+        }
+
+        void removeIf(int node, java.util.function.IntPredicate test) {
+            int kept = 0;
+            for (int i = 0; i < size[node]; i++) {
+                if (!test.test(items[node][i])) items[node][kept++] = items[node][i];
+            }
+            size[node] = kept;
+        }
+    }
+
+    /** Witness searches and shortcut creation during preprocessing. */
+    private static class Contractor {
+        private final ArcList arcs;
+        private final IntLists out;
+        private final IntLists in;
+        private final double[] dist;
+        private final int[] touched;
+        private int touchedCount;
+        private final IndexedHeap heap;
+
+        Contractor(int n, ArcList arcs, IntLists out, IntLists in) {
+            this.arcs = arcs;
+            this.out = out;
+            this.in = in;
+            this.dist = new double[n];
+            this.touched = new int[n];
+            this.heap = new IndexedHeap(n);
+            Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        }
+
+        /** Edge difference plus the number of already contracted neighbours; smaller is contracted first. */
+        double priority(int v, int contractedNeighbors) {
+            int shortcuts = shortcuts(v, false, SIMULATION_SETTLE_LIMIT);
+            return shortcuts - (in.size[v] + out.size[v]) + contractedNeighbors;
+        }
+
+        void contract(int v) {
+            shortcuts(v, true, WITNESS_SETTLE_LIMIT);
+        }
+
+        /** Removes v from its neighbours' lists so later witness searches never pass through it. */
+        void detach(int v) {
+            for (int i = 0; i < out.size[v]; i++) {
+                int w = arcs.target[out.items[v][i]];
+                in.removeIf(w, a -> arcs.source[a] == v);
+            }
+            for (int i = 0; i < in.size[v]; i++) {
+                int u = arcs.source[in.items[v][i]];
+                out.removeIf(u, a -> arcs.target[a] == v);
+            }
+        }
+
+        private int shortcuts(int v, boolean add, int settleLimit) {
+            double maxOut = 0;
+            for (int i = 0; i < out.size[v]; i++) {
+                maxOut = Math.max(maxOut, arcs.weight[out.items[v][i]]);
+            }
+            int count = 0;
+            // Copy: adding shortcuts grows out lists of the in-neighbours while we iterate
+            int[] incoming = Arrays.copyOf(in.items[v], in.size[v]);
+            int[] outgoing = Arrays.copyOf(out.items[v], out.size[v]);
+            for (int inArc : incoming) {
+                int u = arcs.source[inArc];
+                double wu = arcs.weight[inArc];
+                witnessSearch(u, v, wu + maxOut, settleLimit);
+                for (int outArc : outgoing) {
+                    int w = arcs.target[outArc];
+                    if (w == u) continue;
+                    double via = wu + arcs.weight[outArc];
+                    if (dist[w] <= via) continue;
+                    count++;
+                    if (add && !hasArc(u, w, via)) {
+                        int a = arcs.add(u, w, via, -1, inArc, outArc);
+                        out.add(u, a);
+                        in.add(w, a);
+                    }
+                }
+                resetSearch();
+            }
+            return count;
+        }
+
+        private boolean hasArc(int u, int w, double weight) {
+            for (int i = 0; i < out.size[u]; i++) {
+                int a = out.items[u][i];
+                if (arcs.target[a] == w && arcs.weight[a] <= weight) return true;
+            }
+            return false;
+        }
+
+        private void witnessSearch(int source, int skip, double limit, int settleLimit) {
+            dist[source] = 0;
+            touched[touchedCount++] = source;
+            heap.insert(source, 0);
+            int settled = 0;
+            while (!heap.isEmpty() && settled < settleLimit) {
+                if (heap.peekKey() > limit) break;
+                int u = heap.poll();
+                settled++;
+                for (int i = 0; i < out.size[u]; i++) {
+                    int a = out.items[u][i];
+                    int w = arcs.target[a];
+                    if (w == skip) continue;
+                    double d = dist[u] + arcs.weight[a];
+                    if (d < dist[w]) {
+                        if (dist[w] == Double.POSITIVE_INFINITY) touched[touchedCount++] = w;
+                        dist[w] = d;
+                        heap.insertOrDecrease(w, d);
+                    }
+                }
+            }
+        }
+
+        private void resetSearch() {
+            for (int i = 0; i < touchedCount; i++) dist[touched[i]] = Double.POSITIVE_INFINITY;
+            touchedCount = 0;
+            heap.clear();
+        }
+    }
+
+    /** Per-thread query arrays, reset through the list of nodes the last query touched. */
+    private static class QueryState {
+        final double[] forwardDist;
+        final double[] backwardDist;
+        final int[] forwardArc;
+        final int[] backwardArc;
+        final int[] touched;
+        int touchedCount;
+        final boolean[] seen;
+        final IndexedHeap forward;
+        final IndexedHeap backward;
+
+        QueryState(int n) {
+            forwardDist = new double[n];
+            backwardDist = new double[n];
+            forwardArc = new int[n];
+            backwardArc = new int[n];
+            touched = new int[n];
+            seen = new boolean[n];
+            forward = new IndexedHeap(n);
+            backward = new IndexedHeap(n);
+            Arrays.fill(forwardDist, Double.POSITIVE_INFINITY);
+            Arrays.fill(backwardDist, Double.POSITIVE_INFINITY);
+            Arrays.fill(forwardArc, -1);
+            Arrays.fill(backwardArc, -1);
+        }
+
+        void visit(int node, boolean isForward, double d, int arc) {
+            if (!seen[node]) {
+                seen[node] = true;
+                touched[touchedCount++] = node;
+            }
+            if (isForward) {
+                forwardDist[node] = d;
+                forwardArc[node] = arc;
+            } else {
+                backwardDist[node] = d;
+                backwardArc[node] = arc;
+            }
+        }
+
+        void reset() {
+            for (int i = 0; i < touchedCount; i++) {
+                int node = touched[i];
+                seen[node] = false;
+                forwardDist[node] = Double.POSITIVE_INFINITY;
+                backwardDist[node] = Double.POSITIVE_INFINITY;
+                forwardArc[node] = -1;
+                backwardArc[node] = -1;
+            }
+            touchedCount = 0;
+            forward.clear();
+            backward.clear();
+        }
+    }
+}
@@ -54,20 +54,16 @@ public class DataLoader {
         return loadRoads(conn); // Reuse loadRoads to fetch from database
     }
 
-    public static Map<String, Map<String, Integer>> loadTrafficFlow(Connection conn) throws SQLException {
-        Map<String, Map<String, Integer>> trafficFlow = new HashMap<>();
+    /**
+     * Loads the TrafficFlow table into a store indexed by the edges of the given graph.
+     */
+    public static TrafficFlowStore loadTrafficFlow(Connection conn, RoadGraph graph) throws SQLException {
+        TrafficFlowStore trafficFlow = new TrafficFlowStore(graph);
         try (Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery("SELECT * FROM TrafficFlow")) {
             while (rs.next()) {
-                String from = rs.getString("FromID");
-                String to = rs.getString("ToID");
-                String key = from + "-" + to;
-                Map<String, Integer> flow = new HashMap<>();
-                flow.put("MorningPeak", rs.getInt("MorningPeak"));
-                flow.put("Afternoon", rs.getInt("Afternoon"));
-                flow.put("EveningPeak", rs.getInt("EveningPeak"));
-                flow.put("Night", rs.getInt("Night"));
-                trafficFlow.put(key, flow);
+                trafficFlow.add(rs.getString("FromID"), rs.getString("ToID"),
+                        rs.getInt("MorningPeak"), rs.getInt("Afternoon"), rs.getInt("EveningPeak"), rs.getInt("Night"));
             }
         }
         return trafficFlow;
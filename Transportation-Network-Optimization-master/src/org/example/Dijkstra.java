@@ -16,107 +16,202 @@ public class Dijkstra {
         }
     }
 
-    public static class Edge {
-        String to;
-        double distance;
-        int capacity;
-
-        public Edge(String to, double distance, int capacity) {
-            this.to = to;
-            this.distance = distance;
-            this.capacity = capacity;
+    public static PathResult findShortestPath(RoadGraph graph, String start, String end,
+                                              String timeOfDay, TrafficFlowStore trafficFlow,
+                                              EdgeMask closedEdges) {
+        int source = graph.indexOf(start);
+        int target = graph.indexOf(end);
+        if (source < 0 || target < 0) {
+            return new PathResult(Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, new ArrayList<>(List.of(end)));
         }
-    }
 
-    public static PathResult findShortestPath(Map<String, List<Edge>> graph, String start, String end,
-                                              String timeOfDay, Map<String, Map<String, Integer>> trafficFlow,
-                                           List<Road> closedRoads) {
-        Map<String, Double> times = new HashMap<>();//اقل وقت
-        Map<String, Double> distances = new HashMap<>();//اقل مسافه
-        Map<String, String> prev = new HashMap<>();// برجع الطريق
-        PriorityQueue<String> pq = new PriorityQueue<>(Comparator.comparingDouble(times::get));//بختار النقطه اللي الوقت بتعها اقل اولويه
-        Set<String> visited = new HashSet<>();//علشان مرجعش ل نفس النقطه مرتين
-
-        for (String node : graph.keySet()) {
-            times.put(node, Double.POSITIVE_INFINITY);
-            distances.put(node, Double.POSITIVE_INFINITY);
-        }
-        times.put(start, 0.0);
-        distances.put(start, 0.0);
-        pq.add(start);
+        // الوقت و المسافه و النقطه اللي قبلها لكل نقطه، من غير ما نعمل arrays جديده في كل query
+        SearchWorkspace ws = SearchWorkspace.get(graph, SearchWorkspace.FORWARD);
+        IndexedHeap pq = ws.heap();//كل نقطه موجوده مره واحده بس و الوقت بتاعها بيقل جوه الـ heap
+
+        double[] weights = trafficFlow.getWeights().travelTimes(WeightProfiles.VehicleProfile.CAR, Period.fromLabel(timeOfDay));
+        ws.set(source, 0.0, 0.0, -1);
+        pq.insert(source, 0.0);
 
         while (!pq.isEmpty()) {
-            String current = pq.poll();
-            if (visited.contains(current)) continue;
-            visited.add(current);
-
-            if (current.equals(end)) break;
-
-            for (Edge edge : graph.getOrDefault(current, new ArrayList<>())) {
-                Road road = closedRoads.stream()
-                        .filter(r -> r.fromId.equals(current) && r.toId.equals(edge.to))
-                        .findFirst()
-                        .orElse(null);
-                if (road != null) continue;
-
-                String key = current + "-" + edge.to;
-                Map<String, Integer> traffic = trafficFlow.get(key);
-                if (traffic == null) {
-                    key = edge.to + "-" + current;
-                    traffic = trafficFlow.get(key);
+            int current = pq.poll();
+            if (current == target) break;
+
+            for (int e = graph.firstEdge(current); e < graph.lastEdge(current); e++) {
+                int next = graph.target(e);
+                double travelTime = edgeTime(e, weights, closedEdges);
+                if (travelTime == Double.POSITIVE_INFINITY) continue;
+
+                double newTime = ws.time(current) + travelTime;
+                double newDist = ws.length(current) + graph.length(e);
+
+                if (newTime < ws.time(next)) {
+                    ws.set(next, newTime, newDist, current);
+                    pq.insertOrDecrease(next, newTime);
                 }
-                if (traffic == null) continue;
+            }
+        }
+
+        return new PathResult(ws.length(target), ws.time(target), tracePath(graph, ws, target));
+    }
 
-                double travelTime = calculateTravelTime(edge.distance, edge.capacity, timeOfDay, traffic);
-                double newTime = times.get(current) + travelTime;
-                double newDist = distances.get(current) + edge.distance;
+    /**
+     * Point-to-point variant that grows one search from start and one backwards from end and stops
+     * once the two frontiers can no longer improve the best meeting point. Same cost model and
+     * PathResult as findShortestPath, but settles far fewer nodes on large graphs.
+     */
+    public static PathResult findShortestPathBidirectional(RoadGraph graph, String start, String end,
+                                                           String timeOfDay, TrafficFlowStore trafficFlow,
+                                                           EdgeMask closedEdges) {
+        int source = graph.indexOf(start);
+        int target = graph.indexOf(end);
+        if (source < 0 || target < 0) {
+            return new PathResult(Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, new ArrayList<>(List.of(end)));
+        }
 
-                if (newTime < times.getOrDefault(edge.to, Double.POSITIVE_INFINITY)) {
-                    times.put(edge.to, newTime);
-                    distances.put(edge.to, newDist);
-                    prev.put(edge.to, current);
-                    pq.add(edge.to);
+        // Parents are edges: the one used to reach the node from start, or to leave it towards end
+        SearchWorkspace forwardSide = SearchWorkspace.get(graph, SearchWorkspace.FORWARD);
+        SearchWorkspace backwardSide = SearchWorkspace.get(graph, SearchWorkspace.BACKWARD);
+        IndexedHeap forward = forwardSide.heap();
+        IndexedHeap backward = backwardSide.heap();
+
+        double[] weights = trafficFlow.getWeights().travelTimes(WeightProfiles.VehicleProfile.CAR, Period.fromLabel(timeOfDay));
+        forwardSide.set(source, 0.0, 0.0, -1);
+        backwardSide.set(target, 0.0, 0.0, -1);
+        forward.insert(source, 0.0);
+        backward.insert(target, 0.0);
+
+        double best = source == target ? 0.0 : Double.POSITIVE_INFINITY;
+        int meetingNode = source == target ? source : -1;
+
+        // Any path still to be found costs at least the two smallest queued keys together
+        while (!forward.isEmpty() && !backward.isEmpty() && forward.peekKey() + backward.peekKey() < best) {
+            if (forward.peekKey() <= backward.peekKey()) {
+                int current = forward.poll();
+                for (int e = graph.firstEdge(current); e < graph.lastEdge(current); e++) {
+                    double travelTime = edgeTime(e, weights, closedEdges);
+                    if (travelTime == Double.POSITIVE_INFINITY) continue;
+                    int next = graph.target(e);
+                    double newTime = forwardSide.time(current) + travelTime;
+                    if (newTime < forwardSide.time(next)) {
+                        forwardSide.set(next, newTime, 0.0, e);
+                        forward.insertOrDecrease(next, newTime);
+                    }
+                    if (forwardSide.time(next) + backwardSide.time(next) < best) {
+                        best = forwardSide.time(next) + backwardSide.time(next);
+                        meetingNode = next;
+                    }
+                }
+            } else {
+                int current = backward.poll();
+                for (int e = graph.firstEdge(current); e < graph.lastEdge(current); e++) {
+                    int prev = graph.target(e);
+                    int edge = graph.reverse(e); // prev -> current
+                    double travelTime = edgeTime(edge, weights, closedEdges);
+                    if (travelTime == Double.POSITIVE_INFINITY) continue;
+                    double newTime = backwardSide.time(current) + travelTime;
+                    if (newTime < backwardSide.time(prev)) {
+                        backwardSide.set(prev, newTime, 0.0, edge);
+                        backward.insertOrDecrease(prev, newTime);
+                    }
+                    if (forwardSide.time(prev) + backwardSide.time(prev) < best) {
+                        best = forwardSide.time(prev) + backwardSide.time(prev);
+                        meetingNode = prev;
+                    }
                 }
             }
         }
 
+        if (meetingNode < 0) {
+            return new PathResult(Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, new ArrayList<>(List.of(end)));
+        }
+
         List<String> path = new ArrayList<>();
-        String step = end;
-        while (step != null) {
-            path.add(step);
-            step = prev.get(step);
+        double distance = 0;
+        int step = meetingNode;
+        while (forwardSide.parent(step) != -1) {
+            int e = forwardSide.parent(step);
+            path.add(graph.nodeId(step));
+            distance += graph.length(e);
+            step = graph.target(graph.reverse(e));
         }
+        path.add(graph.nodeId(step));
         Collections.reverse(path);
+        step = meetingNode;
+        while (backwardSide.parent(step) != -1) {
+            int e = backwardSide.parent(step);
+            distance += graph.length(e);
+            step = graph.target(e);
+            path.add(graph.nodeId(step));
+        }
 
-        double totalTime = times.getOrDefault(end, Double.POSITIVE_INFINITY);
-        double totalDistance = distances.getOrDefault(end, Double.POSITIVE_INFINITY);
-        return new PathResult(totalDistance, totalTime, path);
+        return new PathResult(distance, best, path);
     }
 
-    static double calculateTravelTime(double distance, int capacity, String timeOfDay, Map<String, Integer> traffic) {
-        double baseTime = distance / 60.0 * 60;
-        double congestionFactor = calculateCongestion(capacity, timeOfDay, traffic);
-        return baseTime * (1 + congestionFactor);
+    /**
+     * Time-dependent variant: leaves start at the given clock time (minutes after midnight) and costs every
+     * edge at the time it is actually entered, so a trip that starts just before a peak ends costs part of
+     * the way at off-peak times. PathResult.time is the trip duration, not the arrival time.
+     */
+    public static PathResult findShortestPathAt(RoadGraph graph, String start, String end,
+                                                double departure, TravelTimeProfile profile,
+                                                EdgeMask closedEdges) {
+        int source = graph.indexOf(start);
+        int target = graph.indexOf(end);
+        if (source < 0 || target < 0) {
+            return new PathResult(Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, new ArrayList<>(List.of(end)));
+        }
+
+        SearchWorkspace ws = SearchWorkspace.get(graph, SearchWorkspace.FORWARD);// وقت الوصول لكل نقطه
+        IndexedHeap pq = ws.heap();
+
+        ws.set(source, departure, 0.0, -1);
+        pq.insert(source, departure);
+
+        // FIFO edges make the earliest arrival at a node also the best time to leave it, so plain Dijkstra holds
+        while (!pq.isEmpty()) {
+            int current = pq.poll();
+            if (current == target) break;
+
+            for (int e = graph.firstEdge(current); e < graph.lastEdge(current); e++) {
+                if (closedEdges.isClosed(e)) continue;
+                double travelTime = profile.travelTime(e, ws.time(current));
+                if (travelTime == Double.POSITIVE_INFINITY) continue;
+
+                int next = graph.target(e);
+                double newArrival = ws.time(current) + travelTime;
+                if (newArrival < ws.time(next)) {
+                    ws.set(next, newArrival, ws.length(current) + graph.length(e), current);
+                    pq.insertOrDecrease(next, newArrival);
+                }
+            }
+        }
+
+        return new PathResult(ws.length(target), ws.time(target) - departure, tracePath(graph, ws, target));
     }
 
-    private static double calculateCongestion(int capacity, String timeOfDay, Map<String, Integer> traffic) {
-        double trafficVolume;
-        switch (timeOfDay) {
-            case "Morning Peak":
-                trafficVolume = traffic.get("MorningPeak");
-                break;
-            case "Afternoon":
-                trafficVolume = traffic.get("Afternoon");
-                break;
-            case "Evening Peak":
-                trafficVolume = traffic.get("EveningPeak");
-                break;
-            default:
-                trafficVolume = traffic.get("Night");
-                break;
+    // Node IDs from the source to target by following node parents; just target if it was never reached
+    private static List<String> tracePath(RoadGraph graph, SearchWorkspace ws, int target) {
+        List<String> path = new ArrayList<>();
+        for (int step = target; step != -1; step = ws.parent(step)) {
+            path.add(graph.nodeId(step));
         }
-        double congestion = capacity > 0 ? trafficVolume / capacity : 1.0;
-        return Math.min(congestion, 1.0);
+        Collections.reverse(path);
+        return path;
+    }
+
+    /**
+     * Travel time of every edge with no closures, as used by findShortestPath. Infinite where there is no traffic data.
+     */
+    static double[] edgeTimes(Period period, TrafficFlowStore trafficFlow) {
+        return trafficFlow.getWeights().travelTimes(WeightProfiles.VehicleProfile.CAR, period);
+    }
+
+    /**
+     * Travel time over edge e, or infinity when the edge is closed or has no traffic data.
+     */
+    private static double edgeTime(int e, double[] weights, EdgeMask closedEdges) {
+        return closedEdges.isClosed(e) ? Double.POSITIVE_INFINITY : weights[e];
     }
 
 
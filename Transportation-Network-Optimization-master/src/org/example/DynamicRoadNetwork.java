@@ -0,0 +1,583 @@
+package org.example;
+
+import java.util.*;
+
+/**
+ * The road network InfrastructureNetworkDesigner.buildOptimalRoadNetwork would pick, kept up to date while
+ * candidate roads are added, removed or repriced instead of being rebuilt for every change.
+ * Roads are ordered as the designer orders them: existing roads first in table order, then new roads by
+ * weighted cost, ties in table order. The chosen forest is held in a link-cut tree with one node per
+ * junction and one per road, so the most expensive road on the path between two junctions is found in
+ * O(log n) amortised time. Adding a road or making one cheaper is a path query and at most one swap, so it
+ * takes O(log n). Removing a chosen road or making it dearer needs a replacement: the cheapest unchosen
+ * road that joins the two halves. For that the chosen forest is also kept in levels as in Holm, de Lichtenberg
+ * and Thorup's dynamic minimum spanning forest: level j is an EulerTourForest of the chosen roads of level j
+ * or more, a tree of it has at most n / 2^j junctions, and every unchosen road hangs off its junctions at a
+ * level where they share a tree. A replacement is looked for from the smaller half at each level, cheapest
+ * road first, and the roads passed over move up a level, which they can do at most log n times, so the
+ * search costs O(log^2 n) amortised per level. Their algorithm only handles removals, and stops at the
+ * highest level with a crossing road; here roads also come in at any cost, so levels below it are searched
+ * too, up to the best cost found, and crossing roads left above the replacement's level are moved down to
+ * it. Those two steps are not paid for by roads moving up.
+ * Batches that touch more than a tenth of the candidates are rebuilt with FilterKruskal instead.
+ */
+public class DynamicRoadNetwork {
+    private static final double REBUILD_FRACTION = 0.1;
+
+    /** Roads that joined and left the chosen network in one update, and its new construction cost. */
+    public record Delta(List<Road> added, List<Road> removed, double totalCost) {
+
+        /** This update followed by the next, as one. */
+        public Delta andThen(Delta next) {
+            List<Road> added = new ArrayList<>(this.added);
+            List<Road> removed = new ArrayList<>(this.removed);
+            for (Road road : next.removed) {
+                if (!added.remove(road)) removed.add(road);
+            }
+            for (Road road : next.added) {
+                if (!removed.remove(road)) added.add(road);
+            }
+            return new Delta(added, removed, next.totalCost);
+        }
+    }
+
+    private final List<Road> roads;
+    private final Map<String, Node> nodes;
+    private final Map<Road, Integer> ids = new IdentityHashMap<>();
+    private final int vertices;
+    // Per road: its junctions (-1 if either is not a known node), ordering weight and state
+    private final int[] from;
+    private final int[] to;
+    private final double[] weight;
+    private final boolean[] candidate;
+    private final boolean[] chosen;
+    private final Comparator<Integer> order = (a, b) -> a.equals(b) ? 0 : heavier(a, b) ? 1 : -1;
+    private int candidates;
+    private double totalCost;
+
+    // Link-cut tree: nodes 0..vertices-1 are junctions, vertices + i is road i
+    private final int[] left;
+    private final int[] right;
+    private final int[] parent;
+    private final boolean[] flipped;
+    private final int[] heaviest;
+    private final int[] stack;
+
+    // Levels of the chosen forest; a chosen road is in levels 0..level, an unchosen one only at level
+    private final EulerTourForest[] levels;
+    private final int[] level;
+
+    // Net change per road during the current update
+    private final int[] change;
+    private final List<Integer> touched = new ArrayList<>();
+
+    /** All roads that may ever become candidates; none of them is a candidate yet. */
+    public DynamicRoadNetwork(Map<String, Node> nodes, List<Road> roads) {
+        this.nodes = nodes;
+        this.roads = new ArrayList<>(roads);
+        Map<String, Integer> index = new HashMap<>();
+        for (String id : nodes.keySet()) {
+            index.put(id, index.size());
+        }
+        vertices = index.size();
+        int m = this.roads.size();
+        from = new int[m];
+        to = new int[m];
+        weight = new double[m];
+        candidate = new boolean[m];
+        chosen = new boolean[m];
+        change = new int[m];
+        for (int i = 0; i < m; i++) {
+            Road road = this.roads.get(i);
+            ids.put(road, i);
+            Integer a = index.get(road.getFromId());
+            Integer b = index.get(road.getToId());
+            from[i] = a != null && b != null ? a : -1;
+            to[i] = a != null && b != null ? b : -1;
+            if (from[i] >= 0) weight[i] = weightOf(road);
+        }
+        level = new int[m];
+        levels = new EulerTourForest[Math.max(1, 32 - Integer.numberOfLeadingZeros(vertices)) + 1];
+
+        int size = vertices + m;
+        left = new int[size];
+        right = new int[size];
+        parent = new int[size];
+        flipped = new boolean[size];
+        heaviest = new int[size];
+        stack = new int[size];
+        Arrays.fill(left, -1);
+        Arrays.fill(right, -1);
+        Arrays.fill(parent, -1);
+        for (int x = 0; x < size; x++) {
+            heaviest[x] = x >= vertices ? x - vertices : -1;
+        }
+    }
+
+    private double weightOf(Road road) {
+        return road.isExisting() ? Double.NEGATIVE_INFINITY : InfrastructureNetworkDesigner.weightedCost(road, nodes);
+    }
+
+    // True if road a comes after road b in the designer's order; -1 (no road) comes before everything
+    private boolean heavier(int a, int b) {
+        if (a < 0) return false;
+        if (b < 0) return true;
+        return weight[a] > weight[b] || (weight[a] == weight[b] && a > b);
+    }
+
+    /** Makes exactly these roads the candidates, adding and removing the difference. */
+    public Delta setCandidates(Collection<Road> roads) {
+        boolean[] wanted = new boolean[this.roads.size()];
+        for (Road road : roads) {
+            Integer id = ids.get(road);
+            if (id != null) wanted[id] = true;
+        }
+        List<Integer> additions = new ArrayList<>();
+        List<Integer> removals = new ArrayList<>();
+        for (int i = 0; i < wanted.length; i++) {
+            if (wanted[i] && !candidate[i]) additions.add(i);
+            if (!wanted[i] && candidate[i]) removals.add(i);
+        }
+
+        if (additions.size() + removals.size() > REBUILD_FRACTION * Math.max(candidates, 1)) {
+            for (int i : additions) candidate[i] = true;
+            for (int i : removals) candidate[i] = false;
+            candidates += additions.size() - removals.size();
+            rebuild();
+        } else {
+            for (int i : additions) insert(i);
+            for (int i : removals) delete(i);
+        }
+        return finish();
+    }
+
+    public Delta addRoad(Road road) {
+        Integer id = ids.get(road);
+        if (id != null && !candidate[id]) insert(id);
+        return finish();
+    }
+
+    public Delta removeRoad(Road road) {
+        Integer id = ids.get(road);
+        if (id != null && candidate[id]) delete(id);
+        return finish();
+    }
+
+    /**
+     * Sets the road's construction cost and moves it in the order; existing roads keep their place.
+     * The cost must be finite and not negative, or the order of the roads is undefined.
+     */
+    public Delta changeCost(Road road, double cost) {
+        if (!(cost >= 0) || Double.isInfinite(cost)) {
+            throw new IllegalArgumentException("Road cost must be finite and not negative: " + cost);
+        }
+        Integer id = ids.get(road);
+        if (id != null && chosen[id] && !road.isExisting()) totalCost += cost - road.getCost();
+        road.cost = cost;
+        if (id == null || from[id] < 0) return finish();
+        if (!candidate[id]) {
+            weight[id] = weightOf(road);
+            return finish();
+        }
+
+        int i = id;
+        if (!chosen[i]) {
+            dropUnchosen(i);
+            weight[i] = weightOf(road);
+            candidate[i] = false;
+            candidates--;
+            insert(i);
+        } else if (weightOf(road) <= weight[i]) {
+            // A chosen road that gets cheaper stays chosen
+            weight[i] = weightOf(road);
+            refresh(vertices + i);
+        } else {
+            weight[i] = weightOf(road);
+            refresh(vertices + i);
+            replace(i, true);
+        }
+        return finish();
+    }
+
+    /** The chosen roads in the designer's order. */
+    public List<Road> getSelectedRoads() {
+        List<Integer> selected = new ArrayList<>();
+        for (int i = 0; i < chosen.length; i++) {
+            if (chosen[i]) selected.add(i);
+        }
+        selected.sort(order);
+        List<Road> result = new ArrayList<>(selected.size());
+        for (int i : selected) result.add(roads.get(i));
+        return result;
+    }
+
+    /** Construction cost of the chosen new roads, as calculateTotalConstructionCost gives it. */
+    public double getTotalCost() { return totalCost; }
+
+    private void insert(int i) {
+        candidate[i] = true;
+        candidates++;
+        if (from[i] < 0 || from[i] == to[i]) return; // Never chosen
+        int u = from[i], v = to[i];
+        if (!connected(u, v)) {
+            linkRoad(i);
+            linkLevels(i, 0);
+            return;
+        }
+        addUnchosen(i, highestLevel(u, v));
+        // Every road that crossed the gap max would leave is dearer than max, so the new road replaces it
+        int max = pathMax(u, v);
+        if (heavier(max, i)) replace(max, true);
+    }
+
+    private void delete(int i) {
+        candidate[i] = false;
+        candidates--;
+        if (!chosen[i]) {
+            dropUnchosen(i);
+            return;
+        }
+        replace(i, false);
+    }
+
+    // Takes chosen road i out and links the cheapest road across the gap; i competes too if it stays a candidate
+    private void replace(int i, boolean stays) {
+        int top = level[i];
+        cutRoad(i);
+        for (int j = 0; j <= top; j++) levels[j].cut(i);
+        int replacement = reconnect(from[i], to[i], top, stays ? i : -1);
+        if (replacement >= 0) linkRoad(replacement);
+    }
+
+    /**
+     * Finds the cheapest road between the two trees that u and v fell into when a chosen road of level top was
+     * cut, moves it into the levels as a chosen road and returns it, or -1 if no road joins them. A given road
+     * that is not in the levels, the cut road itself, takes part as if it were unchosen at level top.
+     */
+    private int reconnect(int u, int v, int top, int given) {
+        int best = given;
+        int highest = given >= 0 ? top : -1; // Highest level with a crossing road found so far
+        int found = top;
+        int[] side = new int[top + 1];
+        List<List<Integer>> aside = new ArrayList<>();
+        for (int j = 0; j <= top; j++) aside.add(new ArrayList<>());
+
+        for (int j = top; j >= 0; j--) {
+            EulerTourForest forest = levels[j];
+            int s = forest.size(u) <= forest.size(v) ? u : v;
+            side[j] = s;
+            if (highest < 0 || j == highest) {
+                // As in the decremental algorithm: the smaller half moves up a level, and so does every road
+                // inside it that is looked at
+                raiseTrees(s, j);
+                for (int g = forest.lightest(s); g >= 0 && (best < 0 || heavier(best, g)); g = forest.lightest(s)) {
+                    if (!forest.connected(from[g], to[g])) {
+                        best = g;
+                        found = j;
+                        highest = j;
+                        break;
+                    }
+                    raise(g);
+                }
+            } else {
+                // Below the highest crossing level only a cheaper road matters; nothing moves until it is known
+                // which level the replacement goes to
+                for (int g = forest.lightest(s); g >= 0 && heavier(best, g); g = forest.lightest(s)) {
+                    if (!forest.connected(from[g], to[g])) {
+                        best = g;
+                        found = j;
+                        break;
+                    }
+                    dropUnchosen(g);
+                    aside.get(j).add(g);
+                }
+            }
+        }
+        if (best < 0) return -1;
+
+        // Crossing roads above the replacement's level would join junctions that share no tree at their level
+        List<Integer> crossing = new ArrayList<>();
+        for (int j = highest; j > found; j--) {
+            EulerTourForest forest = levels[j];
+            if (j < highest) {
+                for (int g : aside.get(j)) addUnchosen(g, j);
+                raiseTrees(side[j], j);
+            }
+            for (int g = forest.lightest(side[j]); g >= 0; g = forest.lightest(side[j])) {
+                if (forest.connected(from[g], to[g])) {
+                    raise(g);
+                } else {
+                    dropUnchosen(g);
+                    crossing.add(g);
+                }
+            }
+        }
+        if (found < highest) {
+            raiseTrees(side[found], found);
+            for (int g : aside.get(found)) addUnchosen(g, found + 1);
+        }
+        for (int j = 0; j < found; j++) {
+            for (int g : aside.get(j)) addUnchosen(g, j);
+        }
+        if (best != given) dropUnchosen(best);
+        linkLevels(best, found);
+        for (int g : crossing) addUnchosen(g, found);
+        if (given >= 0 && best != given) addUnchosen(given, found);
+        return best;
+    }
+
+    // Highest level at which the junctions of a road share a tree
+    private int highestLevel(int u, int v) {
+        int low = 0, high = levels.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (levels[mid] != null && levels[mid].connected(u, v)) low = mid;
+            else high = mid - 1;
+        }
+        return low;
+    }
+
+    private EulerTourForest forest(int j) {
+        if (levels[j] == null) levels[j] = new EulerTourForest(vertices, order);
+        return levels[j];
+    }
+
+    private void addUnchosen(int i, int j) {
+        level[i] = j;
+        forest(j).addIncident(from[i], i);
+        forest(j).addIncident(to[i], i);
+    }
+
+    private void dropUnchosen(int i) {
+        if (from[i] < 0 || levels[level[i]] == null) return;
+        levels[level[i]].removeIncident(from[i], i);
+        levels[level[i]].removeIncident(to[i], i);
+    }
+
+    private void raise(int i) {
+        dropUnchosen(i);
+        addUnchosen(i, level[i] + 1);
+    }
+
+    // Links chosen road i into levels 0..j, tagged at j so that it can be found when it has to move up
+    private void linkLevels(int i, int j) {
+        level[i] = j;
+        for (int k = 0; k <= j; k++) forest(k).link(from[i], to[i], i);
+        levels[j].setTag(i, true);
+    }
+
+    // Moves the chosen roads of level j in s's tree up to level j + 1
+    private void raiseTrees(int s, int j) {
+        for (int i = levels[j].tagged(s); i >= 0; i = levels[j].tagged(s)) {
+            levels[j].setTag(i, false);
+            forest(j + 1).link(from[i], to[i], i);
+            levels[j + 1].setTag(i, true);
+            level[i] = j + 1;
+        }
+    }
+
+    private void rebuild() {
+        boolean[] before = chosen.clone();
+        Arrays.fill(left, -1);
+        Arrays.fill(right, -1);
+        Arrays.fill(parent, -1);
+        Arrays.fill(flipped, false);
+        Arrays.fill(chosen, false);
+        Arrays.fill(levels, null);
+
+        List<Integer> active = new ArrayList<>();
+        for (int i = 0; i < candidate.length; i++) {
+            if (candidate[i] && from[i] >= 0) active.add(i);
+            heaviest[vertices + i] = i;
+        }
+        for (int x = 0; x < vertices; x++) heaviest[x] = -1;
+        int[] a = new int[active.size()];
+        int[] b = new int[active.size()];
+        double[] w = new double[active.size()];
+        for (int k = 0; k < a.length; k++) {
+            int i = active.get(k);
+            a[k] = from[i];
+            b[k] = to[i];
+            w[k] = weight[i];
+        }
+        // Local indices keep the table order, so FilterKruskal's (weight, index) order is the designer's
+        boolean[] picked = new boolean[a.length];
+        for (int k : FilterKruskal.run(a, b, w, new UnionFind(vertices))) picked[k] = true;
+        for (int k = 0; k < a.length; k++) {
+            int i = active.get(k);
+            if (picked[k]) {
+                link(from[i], vertices + i);
+                link(vertices + i, to[i]);
+                linkLevels(i, 0);
+                chosen[i] = true;
+            } else if (from[i] != to[i]) {
+                addUnchosen(i, 0);
+            }
+        }
+        for (int i = 0; i < chosen.length; i++) {
+            if (chosen[i] != before[i]) {
+                change[i] += chosen[i] ? 1 : -1;
+                touched.add(i);
+            }
+        }
+        totalCost = construction();
+    }
+
+    private double construction() {
+        double total = 0;
+        for (int i = 0; i < chosen.length; i++) {
+            if (chosen[i] && !roads.get(i).isExisting()) total += roads.get(i).getCost();
+        }
+        return total;
+    }
+
+    private void linkRoad(int i) {
+        link(from[i], vertices + i);
+        link(vertices + i, to[i]);
+        chosen[i] = true;
+        if (!roads.get(i).isExisting()) totalCost += roads.get(i).getCost();
+        change[i]++;
+        touched.add(i);
+    }
+
+    private void cutRoad(int i) {
+        cut(from[i], vertices + i);
+        cut(vertices + i, to[i]);
+        chosen[i] = false;
+        if (!roads.get(i).isExisting()) totalCost -= roads.get(i).getCost();
+        change[i]--;
+        touched.add(i);
+    }
+
+    private Delta finish() {
+        List<Road> added = new ArrayList<>();
+        List<Road> removed = new ArrayList<>();
+        for (int i : touched) {
+            if (change[i] > 0) added.add(roads.get(i));
+            if (change[i] < 0) removed.add(roads.get(i));
+            change[i] = 0;
+        }
+        touched.clear();
+        return new Delta(added, removed, totalCost);
+    }
+
+    // ---- Link-cut tree ----
+
+    private boolean isRoot(int x) {
+        int p = parent[x];
+        return p < 0 || (left[p] != x && right[p] != x);
+    }
+
+    private void pull(int x) {
+        int best = x >= vertices ? x - vertices : -1;
+        if (left[x] >= 0 && heavier(heaviest[left[x]], best)) best = heaviest[left[x]];
+        if (right[x] >= 0 && heavier(heaviest[right[x]], best)) best = heaviest[right[x]];
+        heaviest[x] = best;
+    }
+
+    private void push(int x) {
+        if (!flipped[x]) return;
+        int swap = left[x];
+        left[x] = right[x];
+        right[x] = swap;
+        if (left[x] >= 0) flipped[left[x]] ^= true;
+        if (right[x] >= 0) flipped[right[x]] ^= true;
+        flipped[x] = false;
+    }
+
+    private void rotate(int x) {
+        int p = parent[x];
+        int g = parent[p];
+        if (!isRoot(p)) {
+            if (left[g] == p) left[g] = x;
+            else right[g] = x;
+        }
+        parent[x] = g;
+        if (left[p] == x) {
+            left[p] = right[x];
+            if (right[x] >= 0) parent[right[x]] = p;
+            right[x] = p;
+        } else {
+            right[p] = left[x];
+            if (left[x] >= 0) parent[left[x]] = p;
+            left[x] = p;
+        }
+        parent[p] = x;
+        pull(p);
+        pull(x);
+    }
+
+    private void splay(int x) {
+        int top = 0;
+        stack[top++] = x;
+        for (int y = x; !isRoot(y); y = parent[y]) stack[top++] = parent[y];
+        while (top > 0) push(stack[--top]);
+        while (!isRoot(x)) {
+            int p = parent[x];
+            if (!isRoot(p)) {
+                int g = parent[p];
+                rotate((left[g] == p) == (left[p] == x) ? p : x);
+            }
+            rotate(x);
+        }
+    }
+
+    // Makes the path from x to the root of its tree the preferred path, with x at the top of its splay tree
+    private void access(int x) {
+        int last = -1;
+        for (int y = x; y >= 0; y = parent[y]) {
+            splay(y);
+            right[y] = last;
+            pull(y);
+            last = y;
+        }
+        splay(x);
+    }
+
+    private void makeRoot(int x) {
+        access(x);
+        flipped[x] ^= true;
+    }
+
+    private int findRoot(int x) {
+        access(x);
+        push(x);
+        while (left[x] >= 0) {
+            x = left[x];
+            push(x);
+        }
+        splay(x);
+        return x;
+    }
+
+    private boolean connected(int u, int v) {
+        return u == v || findRoot(u) == findRoot(v);
+    }
+
+    private void link(int x, int y) {
+        makeRoot(x);
+        parent[x] = y;
+    }
+
+    private void cut(int x, int y) {
+        makeRoot(x);
+        access(y);
+        // x is now y's left child with nothing below it on the path
+        left[y] = -1;
+        parent[x] = -1;
+        pull(y);
+    }
+
+    // Road with the heaviest key on the tree path between two connected junctions
+    private int pathMax(int u, int v) {
+        makeRoot(u);
+        access(v);
+        return heaviest[v];
+    }
+
+    // Recomputes a node's aggregate after its own key changed
+    private void refresh(int x) {
+        access(x);
+        pull(x);
+    }
+}
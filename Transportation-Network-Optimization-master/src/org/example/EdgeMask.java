@@ -0,0 +1,75 @@
+package org.example;
+
+import java.util.*;
+
+/**
+ * Closed edges of a RoadGraph as a bitset over the CSR edge IDs, so a search checks a closure in O(1).
+ * Closures are directional, like the closedRoads lists they replace: closing from -> to leaves to -> from open.
+ * overlay() gives a what-if mask that reads through to this one without copying it.
+ */
+public class EdgeMask {
+    private final RoadGraph graph;
+    private final EdgeMask base;
+    private final BitSet closed = new BitSet();
+
+    public EdgeMask(RoadGraph graph) {
+        this(graph, null);
+    }
+
+    private EdgeMask(RoadGraph graph, EdgeMask base) {
+        this.graph = graph;
+        this.base = base;
+    }
+
+    /** Mask with every road of the list closed in its fromId -> toId direction. */
+    public static EdgeMask of(RoadGraph graph, List<Road> closedRoads) {
+        EdgeMask mask = new EdgeMask(graph);
+        for (Road road : closedRoads) {
+            mask.closeRoad(road);
+        }
+        return mask;
+    }
+
+    public RoadGraph getGraph() { return graph; }
+
+    public boolean isClosed(int edge) {
+        return closed.get(edge) || (base != null && base.isClosed(edge));
+    }
+
+    public boolean isEmpty() {
+        return closed.isEmpty() && (base == null || base.isEmpty());
+    }
+
+    public void close(int edge) {
+        closed.set(edge);
+    }
+
+    /** Closes every edge from -> to; does nothing if the nodes are not adjacent in the graph. */
+    public void close(String fromId, String toId) {
+        int from = graph.indexOf(fromId);
+        int to = graph.indexOf(toId);
+        if (from < 0 || to < 0) return;
+        for (int e = graph.firstEdge(from); e < graph.lastEdge(from); e++) {
+            if (graph.target(e) == to) closed.set(e);
+        }
+    }
+
+    public void closeRoad(Road road) {
+        close(road.fromId, road.toId);
+    }
+
+    /** Independent mask with the same closures, overlays flattened; later closures on either do not show in the other. */
+    public EdgeMask copy() {
+        EdgeMask copy = base != null ? base.copy() : new EdgeMask(graph);
+        copy.closed.or(closed);
+        return copy;
+    }
+
+    /**
+     * New mask on top of this one. Closing edges in the overlay leaves this mask untouched,
+     * while closures added here later are still seen through the overlay.
+     */
+    public EdgeMask overlay() {
+        return new EdgeMask(graph, this);
+    }
+}
@@ -18,12 +18,18 @@ import java.io.File;
 import java.io.IOException;
 
 public class EmergencyRouting extends JFrame {
+    private static final int LANDMARK_COUNT = 8;
+
     private Map<String, Node> nodes;
     private List<Road> roads;
-    private Map<String, List<Road>> adjacencyList;
-    private Map<String, Map<String, Integer>> trafficFlow;
+    private RoadGraph graph;
+    private TrafficFlowStore trafficFlow;
     private Map<String, Boolean> roadStatus;
+    private EdgeMask closedEdges;
     private Map<String, Double> congestionFactors;
+    private Map<String, List<Integer>> roadsByKey;
+    private int[] roadEdges;
+    private double[] congestionTotals;
     private Map<String, SignalTiming> signalTimings;
     private JComboBox<String> startCombo, endCombo, timeCombo, vehicleTypeCombo, scenarioCombo, emergencyLocationCombo;
     private JTextArea resultTextArea;
@@ -36,6 +42,8 @@ public class EmergencyRouting extends JFrame {
     private Timer blinkingTimer;
     private boolean blinkState;
     private TrafficSignalOptimizer signalOptimizer;
+    private Map<String, LandmarkIndex> landmarkIndexes;
+    private Map<String, FacilityCoverage> facilityCoverage;
 
     public EmergencyRouting() {
         try {
@@ -56,7 +64,6 @@ public class EmergencyRouting extends JFrame {
     private void initializeData() throws SQLException {
         nodes = DataLoader.loadNodes(connection);
         roads = DataLoader.loadRoads(connection);
-        trafficFlow = DataLoader.loadTrafficFlow(connection);
         signalTimings = loadSignalTimings();
         congestionFactors = new HashMap<>();
         emergencyPath = null;
@@ -64,11 +71,28 @@ public class EmergencyRouting extends JFrame {
         if (nodes.isEmpty() || roads.isEmpty()) {
             throw new SQLException("No nodes or roads loaded.");
         }
-        adjacencyList = buildAdjacencyList();
+        graph = RoadGraph.build(nodes, roads, false);
+        trafficFlow = DataLoader.loadTrafficFlow(connection, graph);
+        roadsByKey = new HashMap<>();
+        roadEdges = new int[roads.size()];
+        for (int i = 0; i < roads.size(); i++) {
+            Road road = roads.get(i);
+            roadsByKey.computeIfAbsent(road.fromId + "->" + road.toId, k -> new ArrayList<>()).add(i);
+            roadEdges[i] = graph.findEdge(road.fromId, road.toId);
+        }
+        recomputeCongestionTotals();
         signalOptimizer = new TrafficSignalOptimizer(nodes, roads, trafficFlow, signalTimings);
+        landmarkIndexes = new HashMap<>();
+        facilityCoverage = new HashMap<>();
         updateRoadStatus();
     }
 
+    // Landmark bounds are built from the signal delays, so they go with every reload
+    private void reloadSignalTimings() throws SQLException {
+        signalTimings = loadSignalTimings();
+        landmarkIndexes.clear();
+    }
+
     private Map<String, SignalTiming> loadSignalTimings() throws SQLException {
         Map<String, SignalTiming> timings = new HashMap<>();
         String query = "SELECT NodeID, GreenTime, CycleLength FROM IntersectionSignals";
@@ -82,7 +106,7 @@ public class EmergencyRouting extends JFrame {
 
     private void updateRoadStatus() throws SQLException {
         roadStatus = new HashMap<>();
-        congestionFactors.clear();
+        Map<String, Double> activeFactors = new HashMap<>();
         String query = "SELECT FromID, ToID, IsActive, IncidentType, CongestionFactor FROM Incidents WHERE IsActive = TRUE";
         try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(query)) {
             while (rs.next()) {
@@ -91,15 +115,82 @@ public class EmergencyRouting extends JFrame {
                 if (incidentType.equals("Closure")) {
                     roadStatus.put(key, false);
                 } else if (incidentType.equals("Congestion")) {
-                    congestionFactors.put(key, rs.getDouble("CongestionFactor"));
+                    activeFactors.put(key, rs.getDouble("CongestionFactor"));
                     roadStatus.put(key, true);
                 }
             }
         }
+        for (String key : new ArrayList<>(congestionFactors.keySet())) {
+            if (!activeFactors.containsKey(key)) setCongestionFactor(key, 1.0);
+        }
+        activeFactors.forEach(this::setCongestionFactor);
         roads.forEach(road -> {
             String key = road.fromId + "->" + road.toId;
             roadStatus.putIfAbsent(key, true);
         });
+        closedEdges = new EdgeMask(graph);
+        roadStatus.forEach((key, open) -> {
+            if (!open) {
+                int split = key.indexOf("->");
+                closedEdges.close(key.substring(0, split), key.substring(split + 2));
+            }
+        });
+    }
+
+    /** Changes one incident factor and moves the per-period congestion totals by the difference. */
+    private void setCongestionFactor(String key, double factor) {
+        double oldFactor = congestionFactors.getOrDefault(key, 1.0);
+        if (factor == 1.0) {
+            congestionFactors.remove(key);
+        } else {
+            congestionFactors.put(key, factor);
+        }
+        if (oldFactor == factor) return;
+        applyCongestionFactor(key, factor);
+        for (int i : roadsByKey.getOrDefault(key, List.of())) {
+            for (Period period : Period.values()) {
+                congestionTotals[period.ordinal()] += getRoadCongestion(i, period, factor) - getRoadCongestion(i, period, oldFactor);
+            }
+        }
+    }
+
+    /** Passes an incident factor on to the shared congestion arrays of every from -> to edge. */
+    private void applyCongestionFactor(String key, double factor) {
+        int split = key.indexOf("->");
+        int from = graph.indexOf(key.substring(0, split));
+        int to = graph.indexOf(key.substring(split + 2));
+        if (from < 0 || to < 0) return;
+        WeightProfiles weights = trafficFlow.getWeights();
+        for (int e = graph.firstEdge(from); e < graph.lastEdge(from); e++) {
+            if (graph.target(e) == to) weights.setCongestionFactor(e, factor);
+        }
+    }
+
+    /**
+     * Full pass over the roads, needed only when the traffic volumes themselves are reloaded.
+     * The reloaded store starts without incident factors, so they are applied to it again here.
+     */
+    private void recomputeCongestionTotals() {
+        congestionFactors.forEach(this::applyCongestionFactor);
+        congestionTotals = new double[Period.values().length];
+        for (int i = 0; i < roads.size(); i++) {
+            Road road = roads.get(i);
+            double factor = congestionFactors.getOrDefault(road.fromId + "->" + road.toId, 1.0);
+            for (Period period : Period.values()) {
+                congestionTotals[period.ordinal()] += getRoadCongestion(i, period, factor);
+            }
+        }
+    }
+
+    private double getRoadCongestion(int roadIndex, Period period, double congestionFactor) {
+        Road road = roads.get(roadIndex);
+        int edge = roadEdges[roadIndex];
+        double trafficVolume = edge >= 0 ? trafficFlow.volume(edge, period) : trafficFlow.average(period);
+        return road.capacity > 0 ? Math.min(trafficVolume * congestionFactor / road.capacity, 1.0) : 1.0;
+    }
+
+    private double getAverageCongestion(String timeOfDay) {
+        return roads.isEmpty() ? 0.5 : congestionTotals[Period.fromLabel(timeOfDay).ordinal()] / roads.size();
     }
 
     private void initUI() {
@@ -434,8 +525,10 @@ public class EmergencyRouting extends JFrame {
     private void dispatchVehicle(boolean isScenario) {
         try {
             updateRoadStatus();
-            trafficFlow = DataLoader.loadTrafficFlow(connection);
-            signalTimings = loadSignalTimings();
+            trafficFlow = DataLoader.loadTrafficFlow(connection, graph);
+            recomputeCongestionTotals();
+            reloadSignalTimings();
+            refreshFacilityCoverage();
             resetPathDisplay();
 
             String startName = (String) startCombo.getSelectedItem();
@@ -480,6 +573,15 @@ public class EmergencyRouting extends JFrame {
                     "Path (%s) from %s to %s:\nDistance: %.1f km\nTime with priority: %.1f min\nTime without priority: %.1f min\nNodes in path: %d\nAverage response time per km: %.1f min/km\n",
                     selectedVehicleType, startName, endName, totalDistance, totalTime, totalTimeWithoutPriority, emergencyPath.size(),
                     totalDistance > 0 ? totalTime / totalDistance : 0));
+            result.append(String.format("Network average congestion (%s): %.0f%%\n", timeOfDay, getAverageCongestion(timeOfDay) * 100));
+            if (isScenario && selectedVehicleType.equals("Ambulance")) {
+                FacilityCoverage coverage = getFacilityCoverage("Medical", timeOfDay);
+                String hospitalId = coverage.nearestFacility(endId);
+                if (hospitalId != null) {
+                    result.append(String.format("Nearest hospital from %s: %s (%.1f min)\n",
+                            endName, nodes.get(hospitalId).getName(), coverage.responseTime(endId)));
+                }
+            }
             if (missingRoads) {
                 result.append("Warning: Some road segments are missing.\n");
             }
@@ -512,121 +614,69 @@ public class EmergencyRouting extends JFrame {
     }
 
     private void generateAnalytics() {
-        resultTextArea.setText("Starting analytics...");
-        SwingWorker<String, Void> worker = new SwingWorker<>() {
+        resultTextArea.setText("Starting analytics...\n");
+        SwingWorker<String, ResponseAnalytics.Result> worker = new SwingWorker<>() {
             @Override
             protected String doInBackground() throws Exception {
                 if (nodes.isEmpty() || roads.isEmpty() || trafficFlow.isEmpty()) {
                     return "Error: Incomplete data in database.";
                 }
                 StringBuilder analytics = new StringBuilder();
-                List<Node> hospitals = nodes.values().stream().filter(n -> "Medical".equals(n.getNodeType())).collect(Collectors.toList());
+                List<Node> hospitals = nodes.values().stream()
+                        .filter(n -> "Medical".equals(n.getNodeType()) && isNodeConnected(n.getId()))
+                        .collect(Collectors.toList());
                 if (hospitals.isEmpty()) {
                     return "No hospitals found.";
                 }
-
-                Random rand = new Random();
-                List<Node> sampleNodes = nodes.values().stream()
-                        .filter(n -> !hospitals.contains(n) && isNodeConnected(n.getId()))
+                List<String> origins = nodes.values().stream()
+                        .filter(n -> !"Medical".equals(n.getNodeType()) && isNodeConnected(n.getId()))
+                        .map(Node::getId)
                         .collect(Collectors.toList());
-                sampleNodes = sampleNodes.subList(0, Math.min(10, sampleNodes.size()));
-                Collections.shuffle(sampleNodes, rand);
-
-                Map<String, Double> avgTimes = new HashMap<>();
-                Map<String, Double> avgTimesNoPreemption = new HashMap<>();
-                Map<String, Double> avgCongestions = new HashMap<>();
-                Map<String, String> criticalPaths = new HashMap<>();
-                int maxIterations = 100;
-                int iterationCount = 0;
-                long startTime = System.currentTimeMillis();
-                long maxDuration = 30_000;
-
-                for (Node hospital : hospitals) {
-                    if (!isNodeConnected(hospital.getId())) continue;
-                    double totalTime = 0, totalTimeNoPreemption = 0, totalCongestion = 0;
-                    int count = 0;
-                    double maxTime = 0;
-                    String criticalPath = "";
-                    for (Node start : sampleNodes) {
-                        if (iterationCount >= maxIterations || System.currentTimeMillis() - startTime > maxDuration) {
-                            analytics.append("Warning: Analysis stopped due to excessive iterations or timeout.\n");
-                            break;
-                        }
-                        for (String time : new String[]{"Morning Peak", "Afternoon", "Evening Peak", "Night"}) {
-                            List<Node> path = findShortestPath(start.getId(), hospital.getId(), time, true, "Ambulance");
-                            if (path != null && !path.isEmpty()) {
-                                signalOptimizer.optimizeSignalsForPath(path, "Ambulance", time);
-                                var metrics = calculatePathMetrics(path, time, true);
-                                var metricsNoPreemption = calculatePathMetrics(path, time, false);
-                                totalTime += metrics.time;
-                                totalTimeNoPreemption += metricsNoPreemption.time;
-                                totalCongestion += metrics.congestion;
-                                count++;
-                                if (metrics.time > maxTime) {
-                                    maxTime = metrics.time;
-                                    criticalPath = start.getName() + " to " + hospital.getName() + " (" + time + ")";
-                                }
-                            }
-                            iterationCount++;
-                        }
-                    }
-                    if (count > 0) {
-                        avgTimes.put(hospital.getName(), totalTime / count);
-                        avgTimesNoPreemption.put(hospital.getName(), totalTimeNoPreemption / count);
-                        avgCongestions.put(hospital.getName(), totalCongestion / count);
-                        criticalPaths.put(hospital.getName(), criticalPath);
-                    }
+
+                // Every route is costed as if the signals on it were preempted for the ambulance, without
+                // retiming the shared signal state
+                Map<Period, ResponseAnalytics.PeriodCosts> costs = new EnumMap<>(Period.class);
+                for (Period period : Period.values()) {
+                    String time = period.label();
+                    costs.put(period, new ResponseAnalytics.PeriodCosts(
+                            getPreemptedEdgeCosts(time, "Ambulance"),
+                            getEdgeCosts(time, false, "Normal Car"),
+                            trafficFlow.getWeights().congestion(period)));
+                }
+                ResponseAnalytics engine = new ResponseAnalytics(graph, closedEdges,
+                        hospitals.stream().map(Node::getId).collect(Collectors.toList()), origins);
+                List<ResponseAnalytics.Result> results = engine.run(costs, this::publish);
+
+                Map<String, List<ResponseAnalytics.Result>> byHospital = new TreeMap<>();
+                Map<Period, List<ResponseAnalytics.Result>> byPeriod = new EnumMap<>(Period.class);
+                for (ResponseAnalytics.Result result : results) {
+                    if (result.times().length == 0) continue;
+                    byHospital.computeIfAbsent(nodes.get(result.hospitalId()).getName(), k -> new ArrayList<>()).add(result);
+                    byPeriod.computeIfAbsent(result.period(), k -> new ArrayList<>()).add(result);
                 }
 
-                if (avgTimes.isEmpty()) {
+                analytics.append(String.format("Response times from %d nodes to %d hospitals:\n", origins.size(), hospitals.size()));
+                if (byHospital.isEmpty()) {
                     analytics.append("No valid paths found for any hospital.\n");
                 } else {
-                    analytics.append("Average Response Times to Hospitals (with Signal Preemption):\n");
-                    avgTimes.forEach((name, time) ->
-                            analytics.append(String.format("- %s: %.1f min (No Preemption: %.1f min, Avg Congestion: %.0f%%, Critical Path: %s)\n",
-                                    name, time, avgTimesNoPreemption.get(name), avgCongestions.get(name) * 100, criticalPaths.get(name))));
+                    analytics.append("Response Times to Hospitals (with Signal Preemption):\n");
+                    byHospital.forEach((name, list) -> {
+                        ResponseAnalytics.Result worst = Collections.max(list,
+                                Comparator.comparingDouble(r -> r.distribution().worst()));
+                        analytics.append(String.format("- %s: %s (No Preemption: %.1f min, Avg Congestion: %.0f%%, Critical Path: %s)\n",
+                                name, formatDistribution(ResponseAnalytics.combine(list)), meanOf(list, true),
+                                meanOf(list, false) * 100, formatPath(worst)));
+                    });
                 }
 
-                Map<String, Double> timeOfDayTimes = new HashMap<>();
-                Map<String, Double> timeOfDayTimesNoPreemption = new HashMap<>();
-                Map<String, Double> timeOfDayCongestions = new HashMap<>();
-                iterationCount = 0;
-                for (String time : new String[]{"Morning Peak", "Afternoon", "Evening Peak", "Night"}) {
-                    double totalTime = 0, totalTimeNoPreemption = 0, totalCongestion = 0;
-                    int count = 0;
-                    for (Node start : sampleNodes) {
-                        if (iterationCount >= maxIterations || System.currentTimeMillis() - startTime > maxDuration) {
-                            analytics.append("Warning: Time of day analysis stopped.\n");
-                            break;
-                        }
-                        for (Node end : hospitals) {
-                            if (start.equals(end) || !isNodeConnected(start.getId()) || !isNodeConnected(end.getId())) continue;
-                            List<Node> path = findShortestPath(start.getId(), end.getId(), time, true, "Ambulance");
-                            if (path != null && !path.isEmpty()) {
-                                signalOptimizer.optimizeSignalsForPath(path, "Ambulance", time);
-                                var metrics = calculatePathMetrics(path, time, true);
-                                var metricsNoPreemption = calculatePathMetrics(path, time, false);
-                                totalTime += metrics.time;
-                                totalTimeNoPreemption += metricsNoPreemption.time;
-                                totalCongestion += metrics.congestion;
-                                count++;
-                            }
-                            iterationCount++;
-                        }
-                    }
-                    if (count > 0) {
-                        timeOfDayTimes.put(time, totalTime / count);
-                        timeOfDayTimesNoPreemption.put(time, totalTimeNoPreemption / count);
-                        timeOfDayCongestions.put(time, totalCongestion / count);
-                    }
-                }
-                analytics.append("\nAverage Response Times by Time of Day (with Signal Preemption):\n");
-                if (timeOfDayTimes.isEmpty()) {
+                analytics.append("\nResponse Times by Time of Day (with Signal Preemption):\n");
+                if (byPeriod.isEmpty()) {
                     analytics.append("No valid paths found.\n");
                 } else {
-                    timeOfDayTimes.forEach((time, avgTime) ->
-                            analytics.append(String.format("- %s: %.1f min (No Preemption: %.1f min, Avg Congestion: %.0f%%)\n",
-                                    time, avgTime, timeOfDayTimesNoPreemption.get(time), timeOfDayCongestions.get(time) * 100)));
+                    byPeriod.forEach((period, list) ->
+                            analytics.append(String.format("- %s: %s (No Preemption: %.1f min, Avg Congestion: %.0f%%)\n",
+                                    period.label(), formatDistribution(ResponseAnalytics.combine(list)),
+                                    meanOf(list, true), meanOf(list, false) * 100)));
                 }
 
                 analytics.append("\nGreedy Signal Optimization Analysis (Egyptian Context):\n");
@@ -637,6 +687,15 @@ public class EmergencyRouting extends JFrame {
                 return analytics.toString();
             }
 
+            @Override
+            protected void process(List<ResponseAnalytics.Result> chunks) {
+                for (ResponseAnalytics.Result result : chunks) {
+                    if (result.times().length == 0) continue;
+                    resultTextArea.append(String.format("%s, %s: %s\n", nodes.get(result.hospitalId()).getName(),
+                            result.period().label(), formatDistribution(result.distribution())));
+                }
+            }
+
             @Override
             protected void done() {
                 try {
@@ -649,6 +708,30 @@ public class EmergencyRouting extends JFrame {
         worker.execute();
     }
 
+    private static String formatDistribution(ResponseAnalytics.Distribution d) {
+        return String.format("mean %.1f min, p50 %.1f, p90 %.1f, p99 %.1f, worst %.1f (%d routes)",
+                d.mean(), d.p50(), d.p90(), d.p99(), d.worst(), d.count());
+    }
+
+    /** Route-weighted mean of the no-preemption time (baseline) or of the average route congestion. */
+    private static double meanOf(List<ResponseAnalytics.Result> results, boolean baseline) {
+        double total = 0;
+        int count = 0;
+        for (ResponseAnalytics.Result r : results) {
+            int n = r.times().length;
+            total += (baseline ? r.meanBaseline() : r.meanCongestion()) * n;
+            count += n;
+        }
+        return count > 0 ? total / count : 0;
+    }
+
+    private String formatPath(ResponseAnalytics.Result result) {
+        List<String> path = result.worstPath();
+        if (path.isEmpty()) return "";
+        return nodes.get(path.get(0)).getName() + " to " + nodes.get(result.hospitalId()).getName()
+                + " (" + result.period().label() + ", " + (path.size() - 1) + " roads)";
+    }
+
     private void resetUI() {
         try {
             try (Statement stmt = connection.createStatement()) {
@@ -664,10 +747,12 @@ public class EmergencyRouting extends JFrame {
             resetPathDisplay();
             roadStatus.replaceAll((k, v) -> true);
             congestionFactors.clear();
-            signalTimings = loadSignalTimings();
+            reloadSignalTimings();
             resultTextArea.setText("Select start, end points, and vehicle type to dispatch.");
-            trafficFlow = DataLoader.loadTrafficFlow(connection);
+            trafficFlow = DataLoader.loadTrafficFlow(connection, graph);
+            recomputeCongestionTotals();
             updateRoadStatus();
+            refreshFacilityCoverage();
             MapPanel newMapPanel = new MapPanel(nodes, roads, trafficFlow, new ArrayList<>(), false);
             newMapPanel.setPreferredSize(new Dimension(950, 700));
             newMapPanel.setBackground(new Color(245, 245, 220));
@@ -683,96 +768,67 @@ public class EmergencyRouting extends JFrame {
     }
 
     private boolean isNodeConnected(String nodeId) {
-        List<Road> nodeRoads = adjacencyList.getOrDefault(nodeId, Collections.emptyList());
-        return !nodeRoads.isEmpty() && nodeRoads.stream().anyMatch(road -> roadStatus.getOrDefault(road.fromId + "->" + road.toId, true));
+        int node = graph.indexOf(nodeId);
+        if (node < 0) return false;
+        for (int e = graph.firstEdge(node); e < graph.lastEdge(node); e++) {
+            if (!closedEdges.isClosed(e)) return true;
+        }
+        return false;
     }
 
     private List<Node> findShortestPath(String startId, String goalId, String timeOfDay, boolean usePriority, String vehicleType) {
-        try {
-            Node start = nodes.get(startId);
-            Node goal = nodes.get(goalId);
-            if (start == null || goal == null) {
-                resultTextArea.setText("Error: Start or goal node not found.");
-                return null;
+        Node start = nodes.get(startId);
+        Node goal = nodes.get(goalId);
+        if (start == null || goal == null) {
+            resultTextArea.setText("Error: Start or goal node not found.");
+            return null;
+        }
+
+        int startIndex = graph.indexOf(startId);
+        int goalIndex = graph.indexOf(goalId);
+        // gScore and cameFrom are the workspace labels; marked nodes are the closed set
+        SearchWorkspace ws = SearchWorkspace.get(graph, SearchWorkspace.FORWARD);
+        ws.set(startIndex, 0.0, 0.0, -1);
+        IndexedHeap openSet = ws.heap();
+        LandmarkIndex landmarks = getLandmarkIndex(timeOfDay, usePriority, vehicleType);
+        double[] congestion = trafficFlow.getWeights().congestion(Period.fromLabel(timeOfDay));
+        openSet.insert(startIndex, landmarks.lowerBound(startIndex, goalIndex));
+        while (!openSet.isEmpty()) {
+            int currentIndex = openSet.poll();
+            ws.mark(currentIndex);
+            if (currentIndex == goalIndex) {
+                return reconstructPath(ws, currentIndex);
             }
 
-            Map<Node, Double> gScore = new HashMap<>();
-            gScore.put(start, 0.0);
-            Map<Node, Node> cameFrom = new HashMap<>();
-            PriorityQueue<AStarNode> openSet = new PriorityQueue<>();
-            Map<Node, AStarNode> openMap = new HashMap<>();
-            double facilityPriority = "Medical".equals(goal.getNodeType()) ? 0.8 : 1.0;
-            double hStart = distanceBetween(start, goal) * (1 + getAverageCongestion(timeOfDay) * 0.1);
-            AStarNode startASN = new AStarNode(start, 0.0, hStart * facilityPriority);
-            openSet.add(startASN);
-            openMap.put(start, startASN);
-            // Fixed: Changed HashMap to HashSet for closedSet
-            Set<Node> closedSet = new HashSet<>();
-            while (!openSet.isEmpty()) {
-                AStarNode currentASN = openSet.poll();
-                Node current = currentASN.node;
-                openMap.remove(current);
-                if (closedSet.contains(current)) continue;
-                closedSet.add(current);
-
-                if (current.equals(goal)) {
-                    return reconstructPath(cameFrom, current);
-                }
-
-                for (Road road : adjacencyList.getOrDefault(current.getId(), Collections.emptyList())) {
-                    if (!roadStatus.getOrDefault(road.fromId + "->" + road.toId, true)) continue;
-                    Node neighbor = nodes.get(road.toId);
-                    if (neighbor == null || closedSet.contains(neighbor)) continue;
-
-                    double tentativeG = gScore.get(current) + getCost(road, current, neighbor, timeOfDay, usePriority, vehicleType);
-                    if (!gScore.containsKey(neighbor) || tentativeG < gScore.get(neighbor)) {
-                        cameFrom.put(neighbor, current);
-                        gScore.put(neighbor, tentativeG);
-                        double h = distanceBetween(neighbor, goal) * facilityPriority * (1 + getAverageCongestion(timeOfDay) * 0.1);
-                        double f = tentativeG + h;
-                        if (openMap.containsKey(neighbor)) {
-                            openSet.remove(openMap.get(neighbor));
-                        }
-                        AStarNode newASN = new AStarNode(neighbor, tentativeG, f);
-                        openSet.add(newASN);
-                        openMap.put(neighbor, newASN);
-                    }
+            Node current = nodes.get(graph.nodeId(currentIndex));
+            for (int e = graph.firstEdge(currentIndex); e < graph.lastEdge(currentIndex); e++) {
+                int neighborIndex = graph.target(e);
+                if (closedEdges.isClosed(e)) continue;
+                String neighborId = graph.nodeId(neighborIndex);
+                Node neighbor = nodes.get(neighborId);
+                if (neighbor == null || ws.isMarked(neighborIndex)) continue;
+
+                double tentativeG = ws.time(currentIndex) + getCost(e, current, neighbor, congestion[e], timeOfDay, usePriority, vehicleType);
+                if (tentativeG < ws.time(neighborIndex)) {
+                    ws.set(neighborIndex, tentativeG, 0.0, currentIndex);
+                    openSet.insertOrDecrease(neighborIndex, tentativeG + landmarks.lowerBound(neighborIndex, goalIndex));
                 }
             }
-            return null;
-        } catch (SQLException e) {
-            resultTextArea.setText("Database error during pathfinding: " + e.getMessage());
-            return null;
         }
+        return null;
     }
 
-    private List<Node> reconstructPath(Map<Node, Node> cameFrom, Node current) {
+    private List<Node> reconstructPath(SearchWorkspace cameFrom, int current) {
         List<Node> path = new ArrayList<>();
-        path.add(current);
-        while (cameFrom.containsKey(current)) {
-            current = cameFrom.get(current);
-            path.add(0, current);
+        for (int step = current; step != -1; step = cameFrom.parent(step)) {
+            path.add(nodes.get(graph.nodeId(step)));
         }
+        Collections.reverse(path);
         return path;
     }
 
-    private Map<String, List<Road>> buildAdjacencyList() {
-        Map<String, List<Road>> adjList = new HashMap<>();
-        for (Road road : roads) {
-            adjList.computeIfAbsent(road.fromId, k -> new ArrayList<>()).add(road);
-            adjList.computeIfAbsent(road.toId, k -> new ArrayList<>()).add(
-                    new Road(road.toId, road.fromId, road.distance, road.capacity, road.condition, road.isExisting, road.cost));
-        }
-        return adjList;
-    }
-
-    private double getCost(Road road, Node from, Node to, String timeOfDay, boolean usePriority, String vehicleType) throws SQLException {
-        if (road == null) return Double.POSITIVE_INFINITY;
-        String key = from.getId() + "->" + to.getId();
-        double trafficVolume = getTrafficVolume(key, timeOfDay);
-        double congestionFactor = congestionFactors.getOrDefault(key, 1.0);
-        trafficVolume *= congestionFactor;
-        double congestion = road.capacity > 0 ? Math.min(trafficVolume / road.capacity, 1.0) : 1.0;
+    private double getCost(int edge, Node from, Node to, double congestion, String timeOfDay, boolean usePriority, String vehicleType) {
+        Road road = graph.road(edge);
 
         double baseSpeed, priorityFactor, intersectionDelay;
         switch (vehicleType) {
@@ -792,59 +848,110 @@ public class EmergencyRouting extends JFrame {
                 intersectionDelay = signalOptimizer.getNormalDelay(to.getId(), timeOfDay);
         }
 
-        double timeFactor = switch (timeOfDay) {
-            case "Morning Peak" -> 1.2;
-            case "Evening Peak" -> 1.15;
-            case "Night" -> 0.8;
-            default -> 1.0;
-        };
-
         double baseTime = road.distance / baseSpeed * 60;
-        return (baseTime * (1 + priorityFactor * congestion) + intersectionDelay) * timeFactor;
+        return (baseTime * (1 + priorityFactor * congestion) + intersectionDelay) * getTimeFactor(timeOfDay);
     }
 
-    private double getTrafficVolume(String key, String timeOfDay) throws SQLException {
-        TrafficFlowData traffic = (TrafficFlowData) trafficFlow.getOrDefault(key, trafficFlow.get(key.split("->")[1] + "->" + key.split("->")[0]));
-        if (traffic != null) {
-            return switch (timeOfDay) {
-                case "Morning Peak" -> traffic.morningPeak;
-                case "Afternoon" -> traffic.afternoon;
-                case "Evening Peak" -> traffic.eveningPeak;
-                default -> traffic.night;
-            };
-        }
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery("SELECT AVG(" + switch (timeOfDay) {
-                 case "Morning Peak" -> "MorningPeak";
-                 case "Afternoon" -> "Afternoon";
-                 case "Evening Peak" -> "EveningPeak";
-                 default -> "Night";
-             } + ") as avgTraffic FROM TrafficFlow")) {
-            return rs.next() ? rs.getDouble("avgTraffic") : 100;
+    /**
+     * getCost for every edge under the current traffic and signal state, for batch searches. Closed edges and
+     * edges into nodes missing from the Nodes table are infinite, as findShortestPath never takes them.
+     */
+    private double[] getEdgeCosts(String timeOfDay, boolean usePriority, String vehicleType) {
+        double[] congestion = trafficFlow.getWeights().congestion(Period.fromLabel(timeOfDay));
+        double[] costs = new double[graph.edgeCount()];
+        for (int e = 0; e < costs.length; e++) {
+            Node from = nodes.get(graph.nodeId(graph.target(graph.reverse(e))));
+            Node to = nodes.get(graph.nodeId(graph.target(e)));
+            costs[e] = to == null || closedEdges.isClosed(e)
+                    ? Double.POSITIVE_INFINITY
+                    : getCost(e, from, to, congestion[e], timeOfDay, usePriority, vehicleType);
         }
+        return costs;
     }
 
-    private double getAverageCongestion(String timeOfDay) throws SQLException {
-        double totalCongestion = 0;
-        int count = 0;
-        for (Road road : roads) {
-            String key = road.fromId + "->" + road.toId;
-            double trafficVolume = getTrafficVolume(key, timeOfDay);
-            double congestionFactor = congestionFactors.getOrDefault(key, 1.0);
-            double congestion = road.capacity > 0 ? Math.min(trafficVolume * congestionFactor / road.capacity, 1.0) : 1.0;
-            totalCongestion += congestion;
-            count++;
+    /**
+     * getEdgeCosts with priority, but with every signalled node preempted as optimizeSignalsForPath would
+     * leave it once a route through it is dispatched.
+     */
+    private double[] getPreemptedEdgeCosts(String timeOfDay, String vehicleType) {
+        double[] costs = getEdgeCosts(timeOfDay, true, vehicleType);
+        double timeFactor = getTimeFactor(timeOfDay);
+        for (int e = 0; e < costs.length; e++) {
+            if (costs[e] == Double.POSITIVE_INFINITY) continue;
+            String toId = graph.nodeId(graph.target(e));
+            costs[e] += (signalOptimizer.getPreemptedDelay(toId, timeOfDay)
+                    - signalOptimizer.getPreemptionDelay(toId, timeOfDay)) * timeFactor;
         }
-        return count > 0 ? totalCongestion / count : 0.5;
+        return costs;
+    }
+
+    /**
+     * Nearest facility of the given node type for every node, by emergency vehicle cost. Built on first use
+     * and kept current by refreshFacilityCoverage.
+     */
+    private FacilityCoverage getFacilityCoverage(String nodeType, String timeOfDay) {
+        return facilityCoverage.computeIfAbsent(nodeType + "|" + timeOfDay, k -> {
+            List<String> facilityIds = nodes.values().stream()
+                    .filter(n -> nodeType.equals(n.getNodeType()))
+                    .map(Node::getId)
+                    .collect(Collectors.toList());
+            return FacilityCoverage.build(graph, getEdgeCosts(timeOfDay, true, getFacilityVehicle(nodeType)),
+                    closedEdges, facilityIds);
+        });
     }
 
-    private double distanceBetween(Node a, Node b) {
-        double lat1 = Math.toRadians(a.getY()), lon1 = Math.toRadians(a.getX());
-        double lat2 = Math.toRadians(b.getY()), lon2 = Math.toRadians(b.getX());
-        double dlat = lat2 - lat1, dlon = lon2 - lon1;
-        double formulaA = Math.sin(dlat / 2) * Math.sin(dlat / 2) +
-                Math.cos(lat1) * Math.cos(lat2) * Math.sin(dlon / 2) * Math.sin(dlon / 2);
-        return 6371 * 2 * Math.atan2(Math.sqrt(formulaA), Math.sqrt(1 - formulaA));
+    /** Repairs every cached coverage for the closures, incidents and traffic that were just reloaded. */
+    private void refreshFacilityCoverage() {
+        facilityCoverage.forEach((key, coverage) -> {
+            String[] parts = key.split("\\|");
+            coverage.update(getEdgeCosts(parts[1], true, getFacilityVehicle(parts[0])), closedEdges);
+        });
+    }
+
+    private static String getFacilityVehicle(String nodeType) {
+        return "Medical".equals(nodeType) ? "Ambulance" : "Fire Truck";
+    }
+
+    private static double getTimeFactor(String timeOfDay) {
+        return switch (timeOfDay) {
+            case "Morning Peak" -> 1.2;
+            case "Evening Peak" -> 1.15;
+            case "Night" -> 0.8;
+            default -> 1.0;
+        };
+    }
+
+    /**
+     * ALT tables for one period and vehicle, built on first use. The edge weights are the free-flow part of
+     * getCost plus the smallest signal delay the optimizer can leave behind, so the bounds stay admissible
+     * whatever the traffic, congestion factors and preemption state are at query time.
+     */
+    private LandmarkIndex getLandmarkIndex(String timeOfDay, boolean usePriority, String vehicleType) {
+        String key = timeOfDay + "|" + vehicleType + "|" + usePriority;
+        return landmarkIndexes.computeIfAbsent(key, k -> {
+            double timeFactor = getTimeFactor(timeOfDay);
+            double[] weights = new double[graph.edgeCount()];
+            for (int e = 0; e < weights.length; e++) {
+                Road road = graph.road(e);
+                String toId = graph.nodeId(graph.target(e));
+                double baseSpeed, intersectionDelay;
+                switch (vehicleType) {
+                    case "Ambulance":
+                        baseSpeed = 70.0;
+                        intersectionDelay = usePriority ? signalOptimizer.getMinimumPreemptionDelay(toId) : road.intersectionDelay;
+                        break;
+                    case "Fire Truck":
+                        baseSpeed = 65.0;
+                        intersectionDelay = usePriority ? signalOptimizer.getMinimumPreemptionDelay(toId) : road.intersectionDelay;
+                        break;
+                    default:
+                        baseSpeed = 60.0;
+                        intersectionDelay = signalOptimizer.getMinimumNormalDelay(toId);
+                }
+                weights[e] = (road.distance / baseSpeed * 60 + intersectionDelay) * timeFactor;
+            }
+            return LandmarkIndex.build(graph, weights, LANDMARK_COUNT, LandmarkIndex.Strategy.AVOID);
+        });
     }
 
     private boolean displayPathInTable(List<Node> path, String timeOfDay) throws SQLException {
@@ -872,18 +979,17 @@ public class EmergencyRouting extends JFrame {
 
     private record PathMetrics(double time, double distance, double congestion) {}
 
-    private PathMetrics calculatePathMetrics(List<Node> path, String timeOfDay, boolean usePriority) throws SQLException {
+    private PathMetrics calculatePathMetrics(List<Node> path, String timeOfDay, boolean usePriority) {
         if (path == null || path.size() < 2) return new PathMetrics(0, 0, 0);
         double totalTime = 0, totalDistance = 0, totalCongestion = 0;
         int count = 0;
+        double[] congestions = trafficFlow.getWeights().congestion(Period.fromLabel(timeOfDay));
         for (int i = 0; i < path.size() - 1; i++) {
             Node from = path.get(i), to = path.get(i + 1);
-            Road road = getRoad(from.getId(), to.getId());
-            if (road == null) continue;
-            String key = from.getId() + "->" + to.getId();
-            double trafficVolume = getTrafficVolume(key, timeOfDay);
-            double congestionFactor = congestionFactors.getOrDefault(key, 1.0);
-            double congestion = road.capacity > 0 ? Math.min(trafficVolume * congestionFactor / road.capacity, 1.0) : 1.0;
+            int edge = graph.findEdge(from.getId(), to.getId());
+            if (edge < 0) continue;
+            Road road = graph.road(edge);
+            double congestion = congestions[edge];
             double baseSpeed, priorityFactor, intersectionDelay;
             String vehicleType = usePriority ? selectedVehicleType : "Normal Car";
             switch (vehicleType) {
@@ -902,14 +1008,8 @@ public class EmergencyRouting extends JFrame {
                     priorityFactor = 0.5;
                     intersectionDelay = signalOptimizer.getNormalDelay(to.getId(), timeOfDay);
             }
-            double timeFactor = switch (timeOfDay) {
-                case "Morning Peak" -> 1.2;
-                case "Evening Peak" -> 1.15;
-                case "Night" -> 0.8;
-                default -> 1.0;
-            };
             double baseTime = road.distance / baseSpeed * 60;
-            totalTime += (baseTime * (1 + priorityFactor * congestion) + intersectionDelay) * timeFactor;
+            totalTime += (baseTime * (1 + priorityFactor * congestion) + intersectionDelay) * getTimeFactor(timeOfDay);
             totalDistance += road.distance;
             totalCongestion += congestion;
             count++;
@@ -918,8 +1018,8 @@ public class EmergencyRouting extends JFrame {
     }
 
     private Road getRoad(String fromId, String toId) {
-        return adjacencyList.getOrDefault(fromId, Collections.emptyList()).stream()
-                .filter(road -> road.toId.equals(toId)).findFirst().orElse(null);
+        int edge = graph.findEdge(fromId, toId);
+        return edge >= 0 ? graph.road(edge) : null;
     }
 
     private String getNodeIdByName(String name) {
@@ -979,10 +1079,10 @@ public class EmergencyRouting extends JFrame {
     private class TrafficSignalOptimizer {
         private final Map<String, Node> nodes;
         private final List<Road> roads;
-        private final Map<String, Map<String, Integer>> trafficFlow;
+        private final TrafficFlowStore trafficFlow;
         private final Map<String, SignalTiming> signalTimings;
 
-        TrafficSignalOptimizer(Map<String, Node> nodes, List<Road> roads, Map<String, Map<String, Integer>> trafficFlow, Map<String, SignalTiming> signalTimings) {
+        TrafficSignalOptimizer(Map<String, Node> nodes, List<Road> roads, TrafficFlowStore trafficFlow, Map<String, SignalTiming> signalTimings) {
             this.nodes = nodes;
             this.roads = roads;
             this.trafficFlow = trafficFlow;
@@ -1015,12 +1115,34 @@ public class EmergencyRouting extends JFrame {
             return getNormalDelay(nodeId, timeOfDay);
         }
 
+        /** getPreemptionDelay once the node has been preempted; nodes without a signal keep their delay. */
+        double getPreemptedDelay(String nodeId, String timeOfDay) {
+            return signalTimings.containsKey(nodeId) ? 0.5 : getNormalDelay(nodeId, timeOfDay);
+        }
+
         double getNormalDelay(String nodeId, String timeOfDay) {
             if (!signalTimings.containsKey(nodeId)) return 10.0;
             SignalTiming timing = signalTimings.get(nodeId);
             return (timing.cycleLength - timing.greenTime) * 0.5;
         }
 
+        /**
+         * Lower bound on getNormalDelay. optimizeSignalsForPath never raises green time above 70% of the cycle,
+         * so retiming cannot push the delay below what that green share would give.
+         */
+        double getMinimumNormalDelay(String nodeId) {
+            if (!signalTimings.containsKey(nodeId)) return 10.0;
+            SignalTiming timing = signalTimings.get(nodeId);
+            double greenTime = Math.max(timing.greenTime, timing.cycleLength * 0.7);
+            return Math.max(0, (timing.cycleLength - greenTime) * 0.5);
+        }
+
+        /** Lower bound on getPreemptionDelay, whether or not the node ends up preempted. */
+        double getMinimumPreemptionDelay(String nodeId) {
+            if (!signalTimings.containsKey(nodeId)) return 10.0;
+            return Math.min(0.5, getMinimumNormalDelay(nodeId));
+        }
+
         String getSignalStatus(String nodeId) {
             if (signalTimings.containsKey(nodeId) && signalTimings.get(nodeId).isPreempted) {
                 return "Preempted";
@@ -1028,46 +1150,17 @@ public class EmergencyRouting extends JFrame {
             return "Standard";
         }
 
-        private double calculateNodeCongestion(String nodeId, String timeOfDay) throws SQLException {
+        private double calculateNodeCongestion(String nodeId, String timeOfDay) {
             double totalCongestion = 0;
             int count = 0;
-            for (Road road : adjacencyList.getOrDefault(nodeId, Collections.emptyList())) {
-                String key = road.fromId + "->" + road.toId;
-                double trafficVolume = getTrafficVolume(key, timeOfDay);
-                double congestionFactor = congestionFactors.getOrDefault(key, 1.0);
-                double congestion = road.capacity > 0 ? Math.min(trafficVolume * congestionFactor / road.capacity, 1.0) : 1.0;
-                totalCongestion += congestion;
+            int node = graph.indexOf(nodeId);
+            if (node < 0) return 0.5;
+            double[] congestions = trafficFlow.getWeights().congestion(Period.fromLabel(timeOfDay));
+            for (int e = graph.firstEdge(node); e < graph.lastEdge(node); e++) {
+                totalCongestion += congestions[e];
                 count++;
             }
             return count > 0 ? totalCongestion / count : 0.5;
         }
     }
-
-    private class AStarNode implements Comparable<AStarNode> {
-        Node node;
-        double g, f;
-
-        AStarNode(Node node, double g, double f) {
-            this.node = node;
-            this.g = g;
-            this.f = f;
-        }
-
-        @Override
-        public int compareTo(AStarNode other) {
-            return Double.compare(this.f, other.f);
-        }
-
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
-            return node.equals(((AStarNode) o).node);
-        }
-
-        @Override
-        public int hashCode() {
-            return node.hashCode();
-        }
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,287 @@
+package org.example;
+
+import java.util.*;
+
+/**
+ * A forest over the int vertices 0..n-1 kept as Euler tours in treaps, so linking, cutting and asking whether
+ * two vertices share a tree take O(log n) expected time. This is one level of the structure of Holm,
+ * de Lichtenberg and Thorup: tree edges can be tagged, and every vertex holds a set of edges outside the
+ * forest, so a tree's tagged edges and its lightest incident edge in the given order are found in O(log n).
+ * Each tour holds one node per vertex and two per tree edge; vertices get their node the first time they are used.
+ */
+public class EulerTourForest {
+    private final Comparator<Integer> order;
+    private final int[] vertexNode;
+    // Per tree edge, the node of its arc that was created first; the other is its twin
+    private final Map<Integer, Integer> arcs = new HashMap<>();
+    private final Map<Integer, TreeSet<Integer>> incident = new HashMap<>();
+    private final SplittableRandom random = new SplittableRandom(1);
+
+    // Treap nodes: vertex >= 0 for a vertex, otherwise an arc of edge
+    private int[] left = new int[16];
+    private int[] right = new int[16];
+    private int[] parent = new int[16];
+    private int[] priority = new int[16];
+    private int[] vertex = new int[16];
+    private int[] edge = new int[16];
+    private int[] twin = new int[16];
+    private boolean[] tag = new boolean[16];
+    // Lightest incident edge of a vertex node, -1 if none
+    private int[] own = new int[16];
+    // Subtree aggregates
+    private int[] size = new int[16];
+    private int[] count = new int[16];
+    private int[] tags = new int[16];
+    private int[] least = new int[16];
+    private int nodes;
+    private final List<Integer> free = new ArrayList<>();
+    private int splitLeft, splitRight;
+
+    /** An empty forest; order ranks the edges outside it, lightest first. */
+    public EulerTourForest(int vertices, Comparator<Integer> order) {
+        this.order = order;
+        this.vertexNode = new int[vertices];
+        Arrays.fill(vertexNode, -1);
+    }
+
+    public boolean connected(int a, int b) {
+        if (a == b) return true;
+        int x = vertexNode[a], y = vertexNode[b];
+        return x >= 0 && y >= 0 && root(x) == root(y);
+    }
+
+    /** Number of vertices in v's tree. */
+    public int size(int v) {
+        int x = vertexNode[v];
+        return x < 0 ? 1 : count[root(x)];
+    }
+
+    /** Joins the trees of a and b, which must differ, with edge. */
+    public void link(int a, int b, int edge) {
+        int ta = reroot(a);
+        int tb = reroot(b);
+        int x = newNode(-1, edge);
+        int y = newNode(-1, edge);
+        twin[x] = y;
+        twin[y] = x;
+        arcs.put(edge, x);
+        join(join(ta, x), join(tb, y));
+    }
+
+    /** Removes tree edge edge, splitting its tree in two. */
+    public void cut(int edge) {
+        Integer arc = arcs.remove(edge);
+        if (arc == null) return;
+        int x = arc, y = twin[arc];
+        int i = index(x), j = index(y);
+        if (i > j) {
+            int swap = x; x = y; y = swap;
+            swap = i; i = j; j = swap;
+        }
+        split(root(x), i);
+        int before = splitLeft;
+        split(splitRight, 1);
+        split(splitRight, j - i - 1);
+        int rest = splitRight;
+        split(rest, 1);
+        join(before, splitRight);
+        release(x);
+        release(y);
+    }
+
+    public void setTag(int edge, boolean on) {
+        int x = arcs.get(edge);
+        tag[x] = on;
+        update(x);
+    }
+
+    /** A tagged tree edge in v's tree, or -1 if there is none. */
+    public int tagged(int v) {
+        int x = vertexNode[v];
+        if (x < 0) return -1;
+        x = root(x);
+        if (tags[x] == 0) return -1;
+        while (!tag[x]) {
+            x = left[x] >= 0 && tags[left[x]] > 0 ? left[x] : right[x];
+        }
+        return edge[x];
+    }
+
+    public void addIncident(int v, int edge) {
+        TreeSet<Integer> set = incident.computeIfAbsent(v, k -> new TreeSet<>(order));
+        set.add(edge);
+        setOwn(v, set.first());
+    }
+
+    public void removeIncident(int v, int edge) {
+        TreeSet<Integer> set = incident.get(v);
+        if (set == null || !set.remove(edge)) return;
+        if (set.isEmpty()) incident.remove(v);
+        setOwn(v, set.isEmpty() ? -1 : set.first());
+    }
+
+    /** The lightest edge incident to a vertex of v's tree, or -1 if there is none. */
+    public int lightest(int v) {
+        int x = vertexNode[v];
+        return x < 0 ? -1 : least[root(x)];
+    }
+
+    private void setOwn(int v, int e) {
+        int x = node(v);
+        own[x] = e;
+        update(x);
+    }
+
+    private int node(int v) {
+        if (vertexNode[v] < 0) vertexNode[v] = newNode(v, -1);
+        return vertexNode[v];
+    }
+
+    // Rotates v's tour to start at v and returns its treap
+    private int reroot(int v) {
+        int x = node(v);
+        split(root(x), index(x));
+        int before = splitLeft;
+        return join(splitRight, before);
+    }
+
+    private int newNode(int v, int e) {
+        int x;
+        if (!free.isEmpty()) {
+            x = free.remove(free.size() - 1);
+        } else {
+            if (nodes == left.length) grow();
+            x = nodes++;
+        }
+        left[x] = right[x] = parent[x] = -1;
+        priority[x] = random.nextInt();
+        vertex[x] = v;
+        edge[x] = e;
+        twin[x] = -1;
+        tag[x] = false;
+        own[x] = -1;
+        pull(x);
+        return x;
+    }
+
+    private void release(int x) {
+        tag[x] = false;
+        free.add(x);
+    }
+
+    private void grow() {
+        int n = left.length * 2;
+        left = Arrays.copyOf(left, n);
+        right = Arrays.copyOf(right, n);
+        parent = Arrays.copyOf(parent, n);
+        priority = Arrays.copyOf(priority, n);
+        vertex = Arrays.copyOf(vertex, n);
+        edge = Arrays.copyOf(edge, n);
+        twin = Arrays.copyOf(twin, n);
+        tag = Arrays.copyOf(tag, n);
+        own = Arrays.copyOf(own, n);
+        size = Arrays.copyOf(size, n);
+        count = Arrays.copyOf(count, n);
+        tags = Arrays.copyOf(tags, n);
+        least = Arrays.copyOf(least, n);
+    }
+
+    // ---- Treap ----
+
+    private int lighter(int a, int b) {
+        if (a < 0) return b;
+        if (b < 0) return a;
+        return order.compare(a, b) <= 0 ? a : b;
+    }
+
+    private void pull(int x) {
+        int l = left[x], r = right[x];
+        size[x] = 1;
+        count[x] = vertex[x] >= 0 ? 1 : 0;
+        tags[x] = tag[x] ? 1 : 0;
+        least[x] = own[x];
+        if (l >= 0) {
+            size[x] += size[l];
+            count[x] += count[l];
+            tags[x] += tags[l];
+            least[x] = lighter(least[x], least[l]);
+        }
+        if (r >= 0) {
+            size[x] += size[r];
+            count[x] += count[r];
+            tags[x] += tags[r];
+            least[x] = lighter(least[x], least[r]);
+        }
+    }
+
+    // Recomputes the aggregates from x up to its root after x itself changed
+    private void update(int x) {
+        for (int y = x; y >= 0; y = parent[y]) pull(y);
+    }
+
+    private int root(int x) {
+        while (parent[x] >= 0) x = parent[x];
+        return x;
+    }
+
+    // Position of x in its tour
+    private int index(int x) {
+        int i = left[x] >= 0 ? size[left[x]] : 0;
+        for (int y = x; parent[y] >= 0; y = parent[y]) {
+            int p = parent[y];
+            if (right[p] == y) i += 1 + (left[p] >= 0 ? size[left[p]] : 0);
+        }
+        return i;
+    }
+
+    private int join(int a, int b) {
+        int t = merge(a, b);
+        if (t >= 0) parent[t] = -1;
+        return t;
+    }
+
+    private int merge(int a, int b) {
+        if (a < 0) return b;
+        if (b < 0) return a;
+        if (priority[a] > priority[b]) {
+            int m = merge(right[a], b);
+            right[a] = m;
+            parent[m] = a;
+            pull(a);
+            return a;
+        }
+        int m = merge(a, left[b]);
+        left[b] = m;
+        parent[m] = b;
+        pull(b);
+        return b;
+    }
+
+    // Splits treap t into its first k nodes, splitLeft, and the rest, splitRight, both detached
+    private void split(int t, int k) {
+        splitTree(t, k);
+        if (splitLeft >= 0) parent[splitLeft] = -1;
+        if (splitRight >= 0) parent[splitRight] = -1;
+    }
+
+    private void splitTree(int t, int k) {
+        if (t < 0) {
+            splitLeft = splitRight = -1;
+            return;
+        }
+        int l = left[t] >= 0 ? size[left[t]] : 0;
+        if (k <= l) {
+            splitTree(left[t], k);
+            left[t] = splitRight;
+            if (splitRight >= 0) parent[splitRight] = t;
+            pull(t);
+            splitRight = t;
+        } else {
+            splitTree(right[t], k - l - 1);
+            right[t] = splitLeft;
+            if (splitLeft >= 0) parent[splitLeft] = t;
+            pull(t);
+            splitLeft = t;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package org.example;
+
+import java.util.*;
+
+/**
+ * Nearest facility (e.g. hospital) and the time to reach it for every node, from one multi-source search.
+ * All facilities start at time 0 and the search walks edges backwards, so time[v] is the cost of driving
+ * from v to its nearest facility under the given edge weights. Lookups afterwards are array reads.
+ * The coverage keeps its own copy of the weights, and setWeight/update repair only the part of the
+ * search tree a changed edge can affect instead of searching again from every facility.
+ */
+public class FacilityCoverage {
+    // Above this share of changed edges, update() searches from scratch instead of repairing edge by edge
+    private static final double REBUILD_FRACTION = 0.1;
+
+    private final RoadGraph graph;
+    private final int[] facilities;
+    private final double[] weights;
+    private final int[] nearest;
+    private final double[] time;
+    // First edge of each node's route to its facility, -1 at the facilities and unreachable nodes
+    private final int[] next;
+    private final IndexedHeap heap;
+    private final boolean[] affected;
+
+    private FacilityCoverage(RoadGraph graph, int[] facilities, double[] weights) {
+        int n = graph.nodeCount();
+        this.graph = graph;
+        this.facilities = facilities;
+        this.weights = weights;
+        this.nearest = new int[n];
+        this.time = new double[n];
+        this.next = new int[n];
+        this.heap = new IndexedHeap(n);
+        this.affected = new boolean[n];
+    }
+
+    /** Facility IDs that are not in the graph are skipped. Closed edges and infinite weights are never used. */
+    public static FacilityCoverage build(RoadGraph graph, double[] weights, EdgeMask closedEdges,
+                                         Collection<String> facilityIds) {
+        int[] facilities = facilityIds.stream().mapToInt(graph::indexOf).filter(i -> i >= 0).distinct().toArray();
+        double[] own = new double[graph.edgeCount()];
+        for (int e = 0; e < own.length; e++) {
+            own[e] = closedEdges.isClosed(e) ? Double.POSITIVE_INFINITY : weights[e];
+        }
+        FacilityCoverage coverage = new FacilityCoverage(graph, facilities, own);
+        coverage.rebuild();
+        return coverage;
+    }
+
+    private void rebuild() {
+        Arrays.fill(nearest, -1);
+        Arrays.fill(time, Double.POSITIVE_INFINITY);
+        Arrays.fill(next, -1);
+        heap.clear();
+        for (int f : facilities) {
+            nearest[f] = f;
+            time[f] = 0.0;
+            heap.insert(f, 0.0);
+        }
+        propagate();
+    }
+
+    /** Dijkstra from whatever is queued; nodes only change when their time improves. */
+    private void propagate() {
+        while (!heap.isEmpty()) {
+            int u = heap.poll();
+            for (int e = graph.firstEdge(u); e < graph.lastEdge(u); e++) {
+                int edge = graph.reverse(e);
+                double w = weights[edge];
+                if (w == Double.POSITIVE_INFINITY) continue;
+                int v = graph.target(e);
+                double t = time[u] + w;
+                if (t < time[v]) {
+                    time[v] = t;
+                    nearest[v] = nearest[u];
+                    next[v] = edge;
+                    heap.insertOrDecrease(v, t);
+                }
+            }
+        }
+    }
+
+    /**
+     * Changes the weight of one edge (infinity closes it) and repairs the tree. A cheaper edge can only
+     * improve its source node and what routes through it; a dearer tree edge invalidates the subtree
+     * that routes over it, which is cleared and filled again from its unaffected neighbours.
+     */
+    public void setWeight(int edge, double weight) {
+        double old = weights[edge];
+        if (old == weight) return;
+        weights[edge] = weight;
+        int u = graph.target(graph.reverse(edge));
+        int v = graph.target(edge);
+
+        if (weight < old) {
+            double t = time[v] + weight;
+            if (t < time[u]) {
+                time[u] = t;
+                nearest[u] = nearest[v];
+                next[u] = edge;
+                heap.insertOrDecrease(u, t);
+                propagate();
+            }
+            return;
+        }
+        if (next[u] != edge) return;
+
+        List<Integer> subtree = new ArrayList<>();
+        subtree.add(u);
+        affected[u] = true;
+        for (int i = 0; i < subtree.size(); i++) {
+            int x = subtree.get(i);
+            for (int e = graph.firstEdge(x); e < graph.lastEdge(x); e++) {
+                int child = graph.target(e);
+                if (!affected[child] && next[child] == graph.reverse(e)) {
+                    affected[child] = true;
+                    subtree.add(child);
+                }
+            }
+        }
+        for (int x : subtree) {
+            time[x] = Double.POSITIVE_INFINITY;
+            nearest[x] = -1;
+            next[x] = -1;
+        }
+        for (int x : subtree) {
+            for (int e = graph.firstEdge(x); e < graph.lastEdge(x); e++) {
+                int y = graph.target(e);
+                if (affected[y] || weights[e] == Double.POSITIVE_INFINITY) continue;
+                double t = time[y] + weights[e];
+                if (t < time[x]) {
+                    time[x] = t;
+                    nearest[x] = nearest[y];
+                    next[x] = e;
+                }
+            }
+            if (time[x] < Double.POSITIVE_INFINITY) heap.insert(x, time[x]);
+        }
+        for (int x : subtree) {
+            affected[x] = false;
+        }
+        propagate();
+    }
+
+    /**
+     * Brings the coverage in line with new weights and closures, repairing only the edges that changed.
+     * Returns the number of changed edges.
+     */
+    public int update(double[] newWeights, EdgeMask closedEdges) {
+        List<Integer> changed = new ArrayList<>();
+        for (int e = 0; e < weights.length; e++) {
+            double w = closedEdges.isClosed(e) ? Double.POSITIVE_INFINITY : newWeights[e];
+            if (w != weights[e]) changed.add(e);
+        }
+        if (changed.size() > weights.length * REBUILD_FRACTION) {
+            for (int e : changed) {
+                weights[e] = closedEdges.isClosed(e) ? Double.POSITIVE_INFINITY : newWeights[e];
+            }
+            rebuild();
+        } else {
+            for (int e : changed) {
+                setWeight(e, closedEdges.isClosed(e) ? Double.POSITIVE_INFINITY : newWeights[e]);
+            }
+        }
+        return changed.size();
+    }
+
+    /** Independent copy that can be repaired without touching this one. */
+    public FacilityCoverage copy() {
+        FacilityCoverage copy = new FacilityCoverage(graph, facilities, weights.clone());
+        System.arraycopy(nearest, 0, copy.nearest, 0, nearest.length);
+        System.arraycopy(time, 0, copy.time, 0, time.length);
+        System.arraycopy(next, 0, copy.next, 0, next.length);
+        return copy;
+    }
+
+    /** True if some node's route to its facility starts or continues over the edge. */
+    public boolean usesEdge(int edge) {
+        return next[graph.target(graph.reverse(edge))] == edge;
+    }
+
+    public RoadGraph getGraph() { return graph; }
+
+    /** Node indices of the facilities, without duplicates. */
+    public int[] getFacilities() { return facilities; }
+
+    /** Per node index: the time to the nearest facility, infinite if none can be reached. Do not modify. */
+    public double[] getTimes() { return time; }
+
+    /** Node index of the nearest facility, or -1 if none can be reached. */
+    public int nearest(int node) { return nearest[node]; }
+
+    public double time(int node) { return time[node]; }
+
+    /** ID of the facility nearest to the node, or null if the node is unknown or cannot reach one. */
+    public String nearestFacility(String nodeId) {
+        int node = graph.indexOf(nodeId);
+        return node >= 0 && nearest[node] >= 0 ? graph.nodeId(nearest[node]) : null;
+    }
+
+    public double responseTime(String nodeId) {
+        int node = graph.indexOf(nodeId);
+        return node >= 0 ? time[node] : Double.POSITIVE_INFINITY;
+    }
+
+    /** Node IDs from the node to its nearest facility, or null if it cannot reach one. */
+    public List<String> route(String nodeId) {
+        int node = graph.indexOf(nodeId);
+        if (node < 0 || nearest[node] < 0) return null;
+        List<String> path = new ArrayList<>();
+        path.add(nodeId);
+        for (int u = node; next[u] >= 0; u = graph.target(next[u])) {
+            path.add(graph.nodeId(graph.target(next[u])));
+        }
+        return path;
+    }
+}
@@ -0,0 +1,120 @@
+package org.example;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Minimum spanning forest by filter-Kruskal over primitive edge arrays. Edges are split around a pivot;
+ * the cheap half is solved first, then the expensive half drops every edge whose ends are already
+ * connected before it is solved in turn, so most edges of a dense candidate set are never sorted.
+ * Partitioning and filtering run in parallel; unions stay on the calling thread.
+ * Edges are ordered by weight and then by index, so the result is exactly what a stable sort followed by
+ * a plain Kruskal scan gives, ties included.
+ */
+public class FilterKruskal {
+    // Below this many edges a slice is sorted and scanned directly
+    private static final int SORT_THRESHOLD = 4096;
+    // Below this many edges partitioning and filtering are not worth splitting over threads
+    private static final int PARALLEL_THRESHOLD = 1 << 15;
+    private static final int INSERTION_SORT = 16;
+
+    private final int[] from;
+    private final int[] to;
+    private final double[] weights;
+    private final UnionFind uf;
+    private final SplittableRandom random = new SplittableRandom(1);
+    private int[] accepted;
+    private int acceptedCount;
+
+    private FilterKruskal(int[] from, int[] to, double[] weights, UnionFind uf) {
+        this.from = from;
+        this.to = to;
+        this.weights = weights;
+        this.uf = uf;
+        this.accepted = new int[Math.min(from.length, 1024)];
+    }
+
+    /**
+     * Indices of the edges that join separate components of uf, in the order Kruskal accepts them.
+     * uf may already hold unions (e.g. roads that exist) and has the chosen edges merged in afterwards.
+     */
+    public static int[] run(int[] from, int[] to, double[] weights, UnionFind uf) {
+        FilterKruskal kruskal = new FilterKruskal(from, to, weights, uf);
+        kruskal.solve(IntStream.range(0, from.length).toArray());
+        return Arrays.copyOf(kruskal.accepted, kruskal.acceptedCount);
+    }
+
+    private void solve(int[] edges) {
+        while (true) {
+            if (uf.count() <= 1 || edges.length == 0) return;
+            if (edges.length <= SORT_THRESHOLD) {
+                sort(edges, 0, edges.length - 1);
+                for (int e : edges) {
+                    if (uf.union(from[e], to[e])) accept(e);
+                }
+                return;
+            }
+
+            int pivot = edges[random.nextInt(edges.length)];
+            solve(stream(edges).filter(e -> !after(e, pivot)).toArray());
+            // The expensive half continues as a loop, so recursion only goes down the cheap halves
+            edges = stream(edges).filter(e -> after(e, pivot) && uf.root(from[e]) != uf.root(to[e])).toArray();
+        }
+    }
+
+    private IntStream stream(int[] edges) {
+        IntStream stream = Arrays.stream(edges);
+        return edges.length >= PARALLEL_THRESHOLD ? stream.parallel() : stream;
+    }
+
+    // True if edge a comes after edge b in (weight, index) order
+    private boolean after(int a, int b) {
+        return weights[a] > weights[b] || (weights[a] == weights[b] && a > b);
+    }
+
+    private void accept(int edge) {
+        if (acceptedCount == accepted.length) accepted = Arrays.copyOf(accepted, acceptedCount * 2);
+        accepted[acceptedCount++] = edge;
+    }
+
+    // Quicksort in (weight, index) order; all keys differ, so there are no equal runs to worry about
+    private void sort(int[] edges, int low, int high) {
+        while (high - low > INSERTION_SORT) {
+            int mid = (low + high) >>> 1;
+            if (after(edges[low], edges[mid])) swap(edges, low, mid);
+            if (after(edges[mid], edges[high])) swap(edges, mid, high);
+            if (after(edges[low], edges[mid])) swap(edges, low, mid);
+            int pivot = edges[mid];
+            int i = low, j = high;
+            while (i <= j) {
+                while (after(pivot, edges[i])) i++;
+                while (after(edges[j], pivot)) j--;
+                if (i <= j) swap(edges, i++, j--);
+            }
+            // Recurse into the smaller side so the stack stays logarithmic
+            if (j - low < high - i) {
+                sort(edges, low, j);
+                low = i;
+            } else {
+                sort(edges, i, high);
+                high = j;
+            }
+        }
+        for (int i = low + 1; i <= high; i++) {
+            int edge = edges[i];
+            int j = i - 1;
+            while (j >= low && after(edges[j], edge)) {
+                edges[j + 1] = edges[j];
+                j--;
+            }
+            edges[j + 1] = edge;
+        }
+    }
+
+    private static void swap(int[] edges, int i, int j) {
+        int swap = edges[i];
+        edges[i] = edges[j];
+        edges[j] = swap;
+    }
+}
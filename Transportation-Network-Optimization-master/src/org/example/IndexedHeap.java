@@ -0,0 +1,117 @@
+package org.example;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Min-heap over the int node indices 0..capacity-1 with double keys and a real decrease-key.
+ * Each node is in the heap at most once, so the heap never grows beyond the number of nodes.
+ */
+public class IndexedHeap {
+    private static final int ARITY = 4;
+
+    private final int[] heap;
+    private final int[] pos;
+    private final double[] keys;
+    private int size;
+
+    public IndexedHeap(int capacity) {
+        heap = new int[capacity];
+        pos = new int[capacity];
+        keys = new double[capacity];
+        Arrays.fill(pos, -1);
+    }
+
+    public boolean isEmpty() { return size == 0; }
+    public int size() { return size; }
+    public boolean contains(int node) { return pos[node] >= 0; }
+    public double key(int node) { return keys[node]; }
+
+    public double peekKey() {
+        if (size == 0) throw new NoSuchElementException();
+        return keys[heap[0]];
+    }
+
+    public void insert(int node, double key) {
+        if (pos[node] >= 0) throw new IllegalStateException("Node " + node + " is already in the heap");
+        keys[node] = key;
+        heap[size] = node;
+        pos[node] = size;
+        siftUp(size++);
+    }
+
+    public void decreaseKey(int node, double key) {
+        if (key > keys[node]) throw new IllegalArgumentException("New key is larger than the current key");
+        keys[node] = key;
+        siftUp(pos[node]);
+    }
+
+    /** Inserts the node, or lowers its key if it is queued with a larger one. Returns true if the heap changed. */
+    public boolean insertOrDecrease(int node, double key) {
+        if (pos[node] < 0) {
+            insert(node, key);
+            return true;
+        }
+        if (key < keys[node]) {
+            decreaseKey(node, key);
+            return true;
+        }
+        return false;
+    }
+
+    /** Removes and returns the node with the smallest key. */
+    public int poll() {
+        if (size == 0) throw new NoSuchElementException();
+        int min = heap[0];
+        pos[min] = -1;
+        size--;
+        if (size > 0) {
+            heap[0] = heap[size];
+            pos[heap[0]] = 0;
+            siftDown(0);
+        }
+        return min;
+    }
+
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            pos[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private void siftUp(int i) {
+        int node = heap[i];
+        double key = keys[node];
+        while (i > 0) {
+            int parent = (i - 1) / ARITY;
+            int p = heap[parent];
+            if (keys[p] <= key) break;
+            heap[i] = p;
+            pos[p] = i;
+            i = parent;
+        }
+        heap[i] = node;
+        pos[node] = i;
+    }
+
+    private void siftDown(int i) {
+        int node = heap[i];
+        double key = keys[node];
+        while (true) {
+            int first = i * ARITY + 1;
+            if (first >= size) break;
+            int last = Math.min(first + ARITY, size);
+            int best = first;
+            for (int c = first + 1; c < last; c++) {
+                if (keys[heap[c]] < keys[heap[best]]) best = c;
+            }
+            if (keys[heap[best]] >= key) break;
+            heap[i] = heap[best];
+            pos[heap[i]] = i;
+            i = best;
+        }
+        heap[i] = node;
+        pos[node] = i;
+    }
+}
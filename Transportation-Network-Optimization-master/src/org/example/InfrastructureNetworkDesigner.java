@@ -4,10 +4,13 @@ import javax.swing.*;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public class InfrastructureNetworkDesigner {
     private Map<String, Node> nodes;
@@ -26,39 +29,199 @@ public class InfrastructureNetworkDesigner {
     public List<Road> buildOptimalRoadNetwork() {
         List<Road> selectedRoads = new ArrayList<>();
 
-        UnionFind uf = new UnionFind(nodes.keySet());
+        // Node IDs become the int elements of the union-find
+        Map<String, Integer> index = new HashMap<>();
+        for (String id : nodes.keySet()) {
+            index.put(id, index.size());
+        }
+        UnionFind uf = new UnionFind(index.size());
         List<Road> remainingRoads = new ArrayList<>();
 
+        // Existing roads are taken first, in table order
         for (Road road : roads) {
-            String from = road.getFromId();
-            String to = road.getToId();
-            if (road.isExisting() && !uf.connected(from, to)) {
-                uf.union(from, to);
-                selectedRoads.add(road);
-            } else if (!road.isExisting()) {
+            Integer from = index.get(road.getFromId());
+            Integer to = index.get(road.getToId());
+            if (from == null || to == null) continue; // Road to a node that is not in the table
+            if (road.isExisting()) {
+                if (uf.union(from, to)) selectedRoads.add(road);
+            } else {
                 remainingRoads.add(road);
             }
         }
 
-        remainingRoads.sort((road1, road2) -> {
-            double weight1 = calculateWeightedCost(road1);
-            double weight2 = calculateWeightedCost(road2);
-            return Double.compare(weight1, weight2);
-        });
+        // New roads as primitive arrays, with the weighted cost worked out once per road
+        int[] from = new int[remainingRoads.size()];
+        int[] to = new int[remainingRoads.size()];
+        for (int i = 0; i < from.length; i++) {
+            from[i] = index.get(remainingRoads.get(i).getFromId());
+            to[i] = index.get(remainingRoads.get(i).getToId());
+        }
+        double[] weights = new double[remainingRoads.size()];
+        Arrays.parallelSetAll(weights, i -> calculateWeightedCost(remainingRoads.get(i)));
+
+        for (int i : FilterKruskal.run(from, to, weights, uf)) {
+            selectedRoads.add(remainingRoads.get(i));
+        }
+
+        return selectedRoads;
+    }
+
+    /** Hospitals, airports and nodes with more than 200,000 people, the nodes a backbone has to reach. */
+    public List<String> criticalNodes() {
+        return nodes.values().stream()
+                .filter(n -> "Medical".equals(n.getNodeType()) || "Airport".equals(n.getNodeType()) ||
+                        (n.getPopulation() != null && n.getPopulation() > 200000))
+                .map(Node::getId)
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    public List<Road> buildSteinerNetwork() {
+        return buildSteinerNetwork(criticalNodes());
+    }
+
+    /**
+     * Cheapest roads found that connect the terminals, instead of every node (Mehlhorn's 2-approximation of
+     * the Steiner tree). Existing roads cost nothing and new roads their weighted cost. One multi-source
+     * Dijkstra gives every node its nearest terminal; each road between two such regions is a path between
+     * their terminals, and the spanning tree of those paths is expanded into roads, spanned again and
+     * trimmed of dead ends that lead to no terminal. Terminals that cannot reach each other end up in
+     * separate trees. Unknown terminal IDs are skipped.
+     */
+    public List<Road> buildSteinerNetwork(Collection<String> terminalIds) {
+        List<Road> known = roads.stream()
+                .filter(r -> nodes.containsKey(r.getFromId()) && nodes.containsKey(r.getToId()))
+                .collect(Collectors.toList());
+        RoadGraph graph = RoadGraph.build(nodes, known, false);
+        int n = graph.nodeCount();
+        double[] weights = new double[graph.edgeCount()];
+        Arrays.parallelSetAll(weights, e -> graph.road(e).isExisting() ? 0.0 : calculateWeightedCost(graph.road(e)));
+        int[] terminals = terminalIds.stream().mapToInt(graph::indexOf).filter(i -> i >= 0).distinct().toArray();
+        if (terminals.length < 2) return new ArrayList<>();
+
+        // Nearest terminal of every node, as its position in terminals, and the first edge towards it
+        int[] base = new int[n];
+        double[] dist = new double[n];
+        int[] toBase = new int[n];
+        Arrays.fill(base, -1);
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        Arrays.fill(toBase, -1);
+        IndexedHeap heap = new IndexedHeap(n);
+        for (int t = 0; t < terminals.length; t++) {
+            base[terminals[t]] = t;
+            dist[terminals[t]] = 0.0;
+            heap.insert(terminals[t], 0.0);
+        }
+        while (!heap.isEmpty()) {
+            int u = heap.poll();
+            for (int e = graph.firstEdge(u); e < graph.lastEdge(u); e++) {
+                int v = graph.target(e);
+                double d = dist[u] + weights[e];
+                if (d < dist[v]) {
+                    dist[v] = d;
+                    base[v] = base[u];
+                    toBase[v] = graph.reverse(e);
+                    heap.insertOrDecrease(v, d);
+                }
+            }
+        }
+
+        // Roads between two regions, weighted by the length of the terminal path through them
+        int[] bridges = IntStream.range(0, graph.edgeCount())
+                .filter(e -> e < graph.reverse(e))
+                .filter(e -> {
+                    int u = graph.target(graph.reverse(e));
+                    int v = graph.target(e);
+                    return base[u] >= 0 && base[v] >= 0 && base[u] != base[v];
+                })
+                .toArray();
+        int[] from = new int[bridges.length];
+        int[] to = new int[bridges.length];
+        double[] lengths = new double[bridges.length];
+        for (int i = 0; i < bridges.length; i++) {
+            int u = graph.target(graph.reverse(bridges[i]));
+            int v = graph.target(bridges[i]);
+            from[i] = base[u];
+            to[i] = base[v];
+            lengths[i] = dist[u] + weights[bridges[i]] + dist[v];
+        }
+
+        // Each chosen bridge plus the routes from its ends back to their terminals; routes are shared, so a
+        // walk stops at the first node already on the tree
+        boolean[] onTree = new boolean[n];
+        List<Integer> treeEdges = new ArrayList<>();
+        for (int i : FilterKruskal.run(from, to, lengths, new UnionFind(terminals.length))) {
+            treeEdges.add(bridges[i]);
+            for (int x : new int[]{graph.target(graph.reverse(bridges[i])), graph.target(bridges[i])}) {
+                while (!onTree[x]) {
+                    onTree[x] = true;
+                    if (toBase[x] < 0) break;
+                    treeEdges.add(toBase[x]);
+                    x = graph.target(toBase[x]);
+                }
+            }
+        }
+
+        int[] treeFrom = new int[treeEdges.size()];
+        int[] treeTo = new int[treeEdges.size()];
+        double[] treeWeights = new double[treeEdges.size()];
+        for (int i = 0; i < treeFrom.length; i++) {
+            int e = treeEdges.get(i);
+            treeFrom[i] = graph.target(graph.reverse(e));
+            treeTo[i] = graph.target(e);
+            treeWeights[i] = weights[e];
+        }
+        int[] spanning = FilterKruskal.run(treeFrom, treeTo, treeWeights, new UnionFind(n));
 
-        for (Road road : remainingRoads) {
-            String from = road.getFromId();
-            String to = road.getToId();
-            if (!uf.connected(from, to)) {
-                uf.union(from, to);
-                selectedRoads.add(road);
+        // Trim leaves that are not terminals, and the leaves that leaves behind
+        boolean[] terminal = new boolean[n];
+        for (int t : terminals) terminal[t] = true;
+        int[] degree = new int[n];
+        int[] head = new int[n];
+        Arrays.fill(head, -1);
+        int[] nextLink = new int[spanning.length * 2];
+        for (int k = 0; k < spanning.length; k++) {
+            for (int side = 0; side < 2; side++) {
+                int x = side == 0 ? treeFrom[spanning[k]] : treeTo[spanning[k]];
+                degree[x]++;
+                nextLink[2 * k + side] = head[x];
+                head[x] = 2 * k + side;
+            }
+        }
+        boolean[] removed = new boolean[spanning.length];
+        List<Integer> leaves = new ArrayList<>();
+        for (int x = 0; x < n; x++) {
+            if (degree[x] == 1 && !terminal[x]) leaves.add(x);
+        }
+        for (int i = 0; i < leaves.size(); i++) {
+            int x = leaves.get(i);
+            for (int link = head[x]; link >= 0; link = nextLink[link]) {
+                int k = link / 2;
+                if (removed[k]) continue;
+                removed[k] = true;
+                degree[x]--;
+                int y = treeFrom[spanning[k]] == x ? treeTo[spanning[k]] : treeFrom[spanning[k]];
+                if (--degree[y] == 1 && !terminal[y]) leaves.add(y);
+                break;
             }
         }
 
+        List<Road> selectedRoads = new ArrayList<>();
+        for (int k = 0; k < spanning.length; k++) {
+            if (!removed[k]) selectedRoads.add(graph.road(treeEdges.get(spanning[k])));
+        }
         return selectedRoads;
     }
 
     private double calculateWeightedCost(Road road) {
+        return weightedCost(road, nodes);
+    }
+
+    /**
+     * Construction cost as the designer ranks new roads: halved next to high-population areas and facilities.
+     * Both ends must be in the node map.
+     */
+    public static double weightedCost(Road road, Map<String, Node> nodes) {
         Node fromNode = nodes.get(road.getFromId());
         Node toNode = nodes.get(road.getToId());
         double cost = road.getCost();
@@ -128,33 +291,3 @@ public class InfrastructureNetworkDesigner {
         }
     }
 }
-
-class UnionFind {
-    private Map<String, String> parent;
-
-    public UnionFind(Set<String> nodes) {
-        parent = new HashMap<>();
-        for (String node : nodes) {
-            parent.put(node, node);
-        }
-    }
-
-    public String find(String node) {
-        if (!parent.get(node).equals(node)) {
-            parent.put(node, find(parent.get(node)));
-        }
-        return parent.get(node);
-    }
-
-    public void union(String node1, String node2) {
-        String root1 = find(node1);
-        String root2 = find(node2);
-        if (!root1.equals(root2)) {
-            parent.put(root1, root2);
-        }
-    }
-
-    public boolean connected(String node1, String node2) {
-        return find(node1).equals(find(node2));
-    }
-}
\ No newline at end of file
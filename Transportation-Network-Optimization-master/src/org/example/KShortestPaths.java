@@ -0,0 +1,234 @@
+package org.example;
+
+import java.util.*;
+
+/**
+ * Yen's k shortest loopless paths over the same cost model as Dijkstra.findShortestPath.
+ * One backward search from the end gives the exact remaining time from every node with nothing removed.
+ * That is a lower bound for every spur search (removing edges and nodes only makes routes longer), so
+ * spurs run as A* on it, and when the tree route from the spur node avoids everything removed it is
+ * already the best spur and no search is needed. All spur searches of a query share one workspace.
+ */
+public class KShortestPaths {
+
+    /**
+     * Up to k paths from start to end, cheapest first. Empty if end cannot be reached.
+     */
+    public static List<Dijkstra.PathResult> find(RoadGraph graph, String start, String end, int k,
+                                                 String timeOfDay, TrafficFlowStore trafficFlow,
+                                                 EdgeMask closedEdges) {
+        return find(graph, start, end, k, Dijkstra.edgeTimes(Period.fromLabel(timeOfDay), trafficFlow), closedEdges);
+    }
+
+    public static List<Dijkstra.PathResult> find(RoadGraph graph, String start, String end, int k,
+                                                 double[] weights, EdgeMask closedEdges) {
+        List<Dijkstra.PathResult> results = new ArrayList<>();
+        int source = graph.indexOf(start);
+        int target = graph.indexOf(end);
+        if (source < 0 || target < 0 || k <= 0) return results;
+
+        Workspace ws = new Workspace(graph, weights, closedEdges, target, k);
+        if (ws.remaining(source) == Double.POSITIVE_INFINITY) return results;
+
+        List<int[]> found = new ArrayList<>();
+        found.add(ws.treePath(source));
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>(Comparator.comparingDouble(c -> c.cost));
+        Set<List<Integer>> seen = new HashSet<>();
+        seen.add(key(found.get(0)));
+
+        while (found.size() < k) {
+            int[] last = found.get(found.size() - 1);
+            double rootCost = 0;
+            int spurNode = source;
+            for (int i = 0; i < last.length; i++) {
+                ws.nextEpoch();
+                // Routes already found that share this root must not leave the spur node the same way again
+                for (int[] path : found) {
+                    if (path.length > i && samePrefix(path, last, i)) ws.blockEdge(path[i]);
+                }
+                // The root's own nodes are off limits so the spur cannot loop back through them
+                int node = source;
+                for (int j = 0; j < i; j++) {
+                    ws.blockNode(node);
+                    node = graph.target(last[j]);
+                }
+
+                int[] spur = ws.spur(spurNode);
+                if (spur != null) {
+                    int[] path = Arrays.copyOf(last, i + spur.length);
+                    System.arraycopy(spur, 0, path, i, spur.length);
+                    if (seen.add(key(path))) {
+                        candidates.add(new Candidate(path, rootCost + ws.spurCost));
+                    }
+                }
+                rootCost += weights[last[i]];
+                spurNode = graph.target(last[i]);
+            }
+            Candidate next = candidates.poll();
+            if (next == null) break;
+            found.add(next.edges);
+        }
+
+        for (int[] path : found) {
+            results.add(toResult(graph, weights, source, path));
+        }
+        return results;
+    }
+
+    private static boolean samePrefix(int[] a, int[] b, int length) {
+        for (int j = 0; j < length; j++) {
+            if (a[j] != b[j]) return false;
+        }
+        return true;
+    }
+
+    private static List<Integer> key(int[] path) {
+        List<Integer> key = new ArrayList<>(path.length);
+        for (int e : path) key.add(e);
+        return key;
+    }
+
+    private static Dijkstra.PathResult toResult(RoadGraph graph, double[] weights, int source, int[] edges) {
+        double time = 0, distance = 0;
+        List<String> path = new ArrayList<>(edges.length + 1);
+        path.add(graph.nodeId(source));
+        for (int e : edges) {
+            time += weights[e];
+            distance += graph.length(e);
+            path.add(graph.nodeId(graph.target(e)));
+        }
+        return new Dijkstra.PathResult(distance, time, path);
+    }
+
+    private record Candidate(int[] edges, double cost) {}
+
+    /**
+     * The tree to the target lives in this thread's BACKWARD search workspace and the spur searches reuse
+     * the FORWARD one, so a query allocates nothing of graph size. Blocked nodes are marks in the spur
+     * workspace; the blocked edges at a spur node are few (one per route found so far) and kept in a list.
+     */
+    private static class Workspace {
+        final RoadGraph graph;
+        final double[] weights;
+        final EdgeMask closedEdges;
+        final int target;
+        final SearchWorkspace tree;
+        final SearchWorkspace search;
+        final int[] blockedEdges;
+        int blockedCount;
+        double spurCost;
+
+        Workspace(RoadGraph graph, double[] weights, EdgeMask closedEdges, int target, int k) {
+            this.graph = graph;
+            this.weights = weights;
+            this.closedEdges = closedEdges;
+            this.target = target;
+            this.tree = SearchWorkspace.get(graph, SearchWorkspace.BACKWARD);
+            this.search = SearchWorkspace.get(graph, SearchWorkspace.FORWARD);
+            this.blockedEdges = new int[k];
+            buildTree();
+        }
+
+        private boolean usable(int e) {
+            return !closedEdges.isClosed(e) && weights[e] != Double.POSITIVE_INFINITY;
+        }
+
+        /** Exact time from the node to the target with nothing removed. */
+        double remaining(int node) { return tree.time(node); }
+
+        // First edge of the node's best route to the target
+        private int treeEdge(int node) { return tree.parent(node); }
+
+        // Backward Dijkstra from the target
+        private void buildTree() {
+            IndexedHeap heap = tree.heap();
+            tree.set(target, 0.0, 0.0, -1);
+            heap.insert(target, 0.0);
+            while (!heap.isEmpty()) {
+                int u = heap.poll();
+                for (int e = graph.firstEdge(u); e < graph.lastEdge(u); e++) {
+                    int edge = graph.reverse(e);
+                    if (!usable(edge)) continue;
+                    int v = graph.target(e);
+                    double t = tree.time(u) + weights[edge];
+                    if (t < tree.time(v)) {
+                        tree.set(v, t, 0.0, edge);
+                        heap.insertOrDecrease(v, t);
+                    }
+                }
+            }
+        }
+
+        int[] treePath(int from) {
+            int length = 0;
+            for (int u = from; u != target; u = graph.target(treeEdge(u))) length++;
+            int[] path = new int[length];
+            int i = 0;
+            for (int u = from; u != target; u = graph.target(treeEdge(u))) path[i++] = treeEdge(u);
+            return path;
+        }
+
+        void nextEpoch() {
+            search.reset();
+            blockedCount = 0;
+        }
+
+        void blockNode(int node) { search.mark(node); }
+
+        void blockEdge(int edge) {
+            for (int i = 0; i < blockedCount; i++) {
+                if (blockedEdges[i] == edge) return;
+            }
+            blockedEdges[blockedCount++] = edge;
+        }
+
+        private boolean allowed(int edge) {
+            if (search.isMarked(graph.target(edge)) || !usable(edge)) return false;
+            for (int i = 0; i < blockedCount; i++) {
+                if (blockedEdges[i] == edge) return false;
+            }
+            return true;
+        }
+
+        /** Best spur from the node to the target avoiding the blocked edges and nodes, or null; sets spurCost. */
+        int[] spur(int from) {
+            if (remaining(from) == Double.POSITIVE_INFINITY) return null;
+
+            // The unrestricted best route is still open: nothing can beat it
+            boolean treeOpen = true;
+            for (int u = from; u != target && treeOpen; u = graph.target(treeEdge(u))) {
+                treeOpen = allowed(treeEdge(u));
+            }
+            if (treeOpen) {
+                spurCost = remaining(from);
+                return treePath(from);
+            }
+
+            IndexedHeap heap = search.heap();
+            search.set(from, 0.0, 0.0, -1);
+            heap.insert(from, remaining(from));
+            while (!heap.isEmpty()) {
+                int u = heap.poll();
+                if (u == target) break;
+                for (int e = graph.firstEdge(u); e < graph.lastEdge(u); e++) {
+                    if (!allowed(e)) continue;
+                    int v = graph.target(e);
+                    if (remaining(v) == Double.POSITIVE_INFINITY) continue;
+                    double t = search.time(u) + weights[e];
+                    if (t < search.time(v)) {
+                        search.set(v, t, 0.0, e);
+                        heap.insertOrDecrease(v, t + remaining(v));
+                    }
+                }
+            }
+            if (!search.reached(target)) return null;
+
+            spurCost = search.time(target);
+            int length = 0;
+            for (int v = target; v != from; v = graph.target(graph.reverse(search.parent(v)))) length++;
+            int[] path = new int[length];
+            for (int v = target; v != from; v = graph.target(graph.reverse(search.parent(v)))) path[--length] = search.parent(v);
+            return path;
+        }
+    }
+}
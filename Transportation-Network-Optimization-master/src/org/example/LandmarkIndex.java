@@ -0,0 +1,178 @@
+package org.example;
+
+import java.util.*;
+
+/**
+ * ALT lower bounds (A*, landmarks, triangle inequality) for one set of edge weights.
+ * For every landmark L the index stores d(L, v) and d(v, L) for all nodes, so that
+ * d(v, t) >= max(d(L, t) - d(L, v), d(v, L) - d(t, L)).
+ * The bound stays admissible for any real edge costs that are never below the weights used here.
+ */
+public class LandmarkIndex {
+    public enum Strategy {
+        /** Each new landmark is the node farthest from the ones already chosen. */
+        FARTHEST,
+        /** Goldberg-Harrelson "avoid": grow a tree and pick a leaf where the current bounds are worst. */
+        AVOID
+    }
+
+    private final int[] landmarks;
+    private final double[][] fromLandmark;
+    private final double[][] toLandmark;
+
+    private LandmarkIndex(int[] landmarks, double[][] fromLandmark, double[][] toLandmark) {
+        this.landmarks = landmarks;
+        this.fromLandmark = fromLandmark;
+        this.toLandmark = toLandmark;
+    }
+
+    public static LandmarkIndex build(RoadGraph graph, double[] weights, int count, Strategy strategy) {
+        int n = graph.nodeCount();
+        count = Math.min(count, n);
+        List<Integer> chosen = new ArrayList<>();
+        List<double[]> from = new ArrayList<>();
+        List<double[]> to = new ArrayList<>();
+        LandmarkIndex partial = new LandmarkIndex(new int[0], new double[0][], new double[0][]);
+        Random random = new Random(n);
+
+        while (chosen.size() < count) {
+            int landmark = -1;
+            for (int attempt = 0; attempt < 10 && (landmark < 0 || chosen.contains(landmark)); attempt++) {
+                landmark = strategy == Strategy.FARTHEST
+                        ? farthest(graph, weights, chosen, random)
+                        : avoid(graph, weights, partial, random);
+            }
+            if (landmark < 0 || chosen.contains(landmark)) break;
+            chosen.add(landmark);
+            from.add(search(graph, weights, landmark, false, null, null));
+            to.add(search(graph, weights, landmark, true, null, null));
+            partial = new LandmarkIndex(chosen.stream().mapToInt(Integer::intValue).toArray(),
+                    from.toArray(new double[0][]), to.toArray(new double[0][]));
+        }
+        return partial;
+    }
+
+    public int[] getLandmarks() { return landmarks.clone(); }
+
+    /** Lower bound on the cost from node v to node target. */
+    public double lowerBound(int v, int target) {
+        double best = 0;
+        for (int i = 0; i < landmarks.length; i++) {
+            double[] from = fromLandmark[i];
+            double[] to = toLandmark[i];
+            if (from[v] != Double.POSITIVE_INFINITY && from[target] != Double.POSITIVE_INFINITY) {
+                best = Math.max(best, from[target] - from[v]);
+            }
+            if (to[v] != Double.POSITIVE_INFINITY && to[target] != Double.POSITIVE_INFINITY) {
+                best = Math.max(best, to[v] - to[target]);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Single-source search over the index weights. With reverse set it follows edges backwards,
+     * giving d(v, source) instead of d(source, v). If given, parent receives the tree parent of each node
+     * and order the nodes in the order they were settled (-1 after the last one).
+     */
+    private static double[] search(RoadGraph graph, double[] weights, int source, boolean reverse, int[] parent, int[] order) {
+        int n = graph.nodeCount();
+        double[] dist = new double[n];
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        if (parent != null) Arrays.fill(parent, -1);
+        if (order != null) Arrays.fill(order, -1);
+        IndexedHeap heap = new IndexedHeap(n);
+        dist[source] = 0;
+        heap.insert(source, 0);
+        int settled = 0;
+        while (!heap.isEmpty()) {
+            int u = heap.poll();
+            if (order != null) order[settled++] = u;
+            for (int e = graph.firstEdge(u); e < graph.lastEdge(u); e++) {
+                int v = graph.target(e);
+                double w = reverse ? weights[graph.reverse(e)] : weights[e];
+                if (w == Double.POSITIVE_INFINITY) continue;
+                double d = dist[u] + w;
+                if (d < dist[v]) {
+                    dist[v] = d;
+                    if (parent != null) parent[v] = u;
+                    heap.insertOrDecrease(v, d);
+                }
+            }
+        }
+        return dist;
+    }
+
+    private static int farthest(RoadGraph graph, double[] weights, List<Integer> chosen, Random random) {
+        int n = graph.nodeCount();
+        if (n == 0) return -1;
+        int start = chosen.isEmpty() ? random.nextInt(n) : -1;
+        // Multi-source search from every landmark chosen so far (or from a random start node)
+        double[] dist = new double[n];
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        IndexedHeap heap = new IndexedHeap(n);
+        for (int s : chosen.isEmpty() ? List.of(start) : chosen) {
+            dist[s] = 0;
+            heap.insertOrDecrease(s, 0);
+        }
+        int farthest = -1;
+        while (!heap.isEmpty()) {
+            int u = heap.poll();
+            farthest = u;
+            for (int e = graph.firstEdge(u); e < graph.lastEdge(u); e++) {
+                if (weights[e] == Double.POSITIVE_INFINITY) continue;
+                int v = graph.target(e);
+                double d = dist[u] + weights[e];
+                if (d < dist[v]) {
+                    dist[v] = d;
+                    heap.insertOrDecrease(v, d);
+                }
+            }
+        }
+        return farthest;
+    }
+
+    private static int avoid(RoadGraph graph, double[] weights, LandmarkIndex current, Random random) {
+        int n = graph.nodeCount();
+        if (n == 0) return -1;
+        int root = random.nextInt(n);
+        int[] parent = new int[n];
+        int[] order = new int[n];
+        double[] dist = search(graph, weights, root, false, parent, order);
+
+        boolean[] isLandmark = new boolean[n];
+        for (int l : current.landmarks) isLandmark[l] = true;
+        double[] size = new double[n];
+        boolean[] covered = new boolean[n];
+        // Children are settled after their parents, so walking the settle order backwards sums subtrees bottom-up
+        for (int i = n - 1; i >= 0; i--) {
+            int v = order[i];
+            if (v < 0) continue;
+            if (isLandmark[v]) covered[v] = true;
+            size[v] += dist[v] - current.lowerBound(root, v);
+            if (covered[v]) size[v] = 0;
+            int p = parent[v];
+            if (p >= 0) {
+                size[p] += size[v];
+                covered[p] |= covered[v];
+            }
+        }
+
+        // Walk down from the root into the heaviest subtree until a leaf is reached
+        int[] bestChild = new int[n];
+        double[] bestSize = new double[n];
+        Arrays.fill(bestChild, -1);
+        for (int v = 0; v < n; v++) {
+            int p = parent[v];
+            if (p >= 0 && !covered[v] && size[v] > bestSize[p]) {
+                bestSize[p] = size[v];
+                bestChild[p] = v;
+            }
+        }
+        int node = root;
+        while (bestChild[node] != -1) {
+            node = bestChild[node];
+        }
+        return node;
+    }
+}
@@ -12,7 +12,7 @@ import java.util.TimerTask;
 public class MapPanel extends JPanel {
     private Map<String, Node> nodes;
     private List<Road> roads;
-    private Map<String, Map<String, Integer>> trafficFlow;
+    private TrafficFlowStore trafficFlow;
     private List<String> currentLineStops;
     private List<String> highlightedPath;
     private String timeOfDay = "Morning Peak";
@@ -24,7 +24,7 @@ public class MapPanel extends JPanel {
     private float animationProgress = 0.0f;
     private Timer animationTimer;
 
-    public MapPanel(Map<String, Node> nodes, List<Road> roads, Map<String, Map<String, Integer>> trafficFlow,
+    public MapPanel(Map<String, Node> nodes, List<Road> roads, TrafficFlowStore trafficFlow,
                     List<Road> closedRoads, boolean highlightRouteOnly) {
         this.nodes = nodes;
         this.roads = roads;
@@ -127,26 +127,8 @@ public class MapPanel extends JPanel {
         }
     }
 
-    private double calculateCongestion(int capacity, String timeOfDay, Map<String, Integer> traffic) {
-        double trafficVolume = getTrafficForTime(traffic, timeOfDay != null ? timeOfDay : "Morning Peak");
-        double congestion = capacity > 0 ? trafficVolume / capacity : 1.0;
-        return Math.min(congestion, 1.0);
-    }
-
-    private double getTrafficForTime(Map<String, Integer> traffic, String timeOfDay) {
-        if (traffic == null) return 0;
-        switch (timeOfDay) {
-            case "Morning Peak":
-                return traffic.getOrDefault("MorningPeak", 0);
-            case "Afternoon":
-                return traffic.getOrDefault("Afternoon", 0);
-            case "Evening Peak":
-                return traffic.getOrDefault("EveningPeak", 0);
-            case "Night":
-                return traffic.getOrDefault("Night", 0);
-            default:
-                return 0;
-        }
+    private double calculateCongestion(String timeOfDay, int edge) {
+        return trafficFlow.getWeights().congestion(Period.fromLabel(timeOfDay != null ? timeOfDay : "Morning Peak"))[edge];
     }
 
     @Override
@@ -174,13 +156,11 @@ public class MapPanel extends JPanel {
                 int x2 = (int) ((toNode.getX() - minX) / (maxX - minX) * (getWidth() - 50) + 25);
                 int y2 = (int) ((toNode.getY() - minY) / (maxY - minY) * (getHeight() - 50) + 25);
 
-                String key = road.fromId + "-" + road.toId;
-                if (!trafficFlow.containsKey(key)) key = road.toId + "-" + road.fromId;
-                Map<String, Integer> traffic = trafficFlow.get(key);
+                int edge = trafficFlow.edge(road.fromId, road.toId);
 
                 if (road.isExisting()) {
-                    if (traffic != null) {
-                        double congestion = calculateCongestion(road.getCapacity(), timeOfDay, traffic);
+                    if (trafficFlow.hasFlow(edge)) {
+                        double congestion = calculateCongestion(timeOfDay, edge);
                         Color baseColor = congestion > 0.8 ? new Color(139, 69, 19) :
                                 congestion > 0.5 ? new Color(255, 215, 0) :
                                         new Color(107, 142, 35);
@@ -0,0 +1,418 @@
+package org.example;
+
+import java.util.*;
+
+/**
+ * Queue-based (mesoscopic) discrete-event traffic simulation over a day. Vehicles move in packets of
+ * PACKET_SIZE along the directed edges of the road graph. Each edge is a FIFO queue: a packet can leave
+ * once it has driven the edge at free-flow speed, no sooner than the edge's capacity allows after the
+ * packet before it, and only when the next edge has room, so queues spill back upstream.
+ *
+ * Demand comes from the TrafficFlow volumes (vehicles per hour) of the period the clock is in. A packet
+ * reaching a node drives on with probability 1 - 1 / MEAN_EDGES_PER_TRIP (less where the node has more
+ * volume arriving than leaving) onto an outgoing edge picked in proportion to its volume, and every node
+ * starts periodic packets for whatever leaving volume the arriving packets do not supply. Uncongested,
+ * this loads every edge with its measured volume.
+ * Events live in a TimingWheel on a one-second clock, and all per-packet and per-edge state is in int
+ * and double arrays, so a day with millions of trips runs in seconds.
+ */
+public class MesoscopicSimulation {
+    public static final int SECONDS_PER_DAY = Period.MINUTES_PER_DAY * 60;
+    public static final int PACKET_SIZE = 10;
+    private static final double FREE_FLOW_SPEED = 60.0;
+    private static final double LANE_CAPACITY = 1800.0;
+    private static final double JAM_DENSITY = 150.0; // vehicles per km and lane
+    // A packet blocked this long leaves the network (a gridlock release), so that spill-back cannot lock up a
+    // loop of full edges while no edge ever holds more than its storage
+    private static final int STUCK_SECONDS = 300;
+    private static final double MEAN_EDGES_PER_TRIP = 8;
+    private static final int MAX_EDGES_PER_TRIP = 60;
+
+    // Event values: the payload shifted left, the event kind in the low bit. A departure's payload is
+    // edge * PERIODS + period, so each period runs its own chain of departures and ends it with the period
+    private static final int SERVE = 0;
+    private static final int DEPART = 1;
+
+    private static final int PERIODS = Period.values().length;
+
+    private static final int UNCHOSEN = -2;
+    private static final int TRIP_END = -1;
+
+    /**
+     * Totals are in vehicles. periodVolumes[period][edge] is the number of vehicles that left the edge
+     * while the clock was in that period, and meanDelays[edge] the average minutes a vehicle spent on the
+     * edge beyond its free-flow time. gridlockReleases counts the vehicles taken off the network after being
+     * blocked for STUCK_SECONDS; their trips are not completed.
+     */
+    public record Result(long tripsStarted, long tripsCompleted, long gridlockReleases, double meanTripMinutes,
+                         double vehicleHours, double[][] periodVolumes, double[] meanDelays, int maxPacketsInNetwork,
+                         long events) {
+
+        /** Simulated vehicles per hour on the edge during the period, comparable with the TrafficFlow table. */
+        public double hourlyVolume(int edge, Period period) {
+            return periodVolumes[period.ordinal()][edge] / (period.lengthMinutes() / 60.0);
+        }
+    }
+
+    private final RoadGraph graph;
+    private final EdgeMask closedEdges;
+    private final SplittableRandom random;
+    private final int edgeCount;
+    // Period index of every minute of the day, looked up on every event
+    private final int[] periodOfMinute = new int[Period.MINUTES_PER_DAY];
+
+    // Per period: the volume of every edge, and what arrives at and leaves every node
+    private final double[][] volumes;
+    private final double[][] inflow;
+    private final double[][] outflow;
+
+    // Per edge
+    private final int[] freeFlowSeconds;
+    private final double[] serviceSeconds;
+    private final int[] storage;
+    private final int[] queueHead;
+    private final int[] queueTail;
+    private final int[] queued;
+    private final double[] nextExit;
+    private final int[] scheduledAt;
+    private final int[] pendingDepartures;
+    private final int[] waitingHead;
+    private final int[] waitingNext;
+    private final int[] waitingOn;
+
+    // Per packet, recycled through a free list
+    private int[] packetNext;
+    private int[] entryTime;
+    private int[] startTime;
+    private int[] edgesDriven;
+    private int[] nextEdge;
+    private int freePacket = -1;
+    private int packetsUsed;
+
+    private TimingWheel wheel;
+    private long tripsStarted;
+    private long tripsCompleted;
+    private long gridlockReleases;
+    private double tripSeconds;
+    private double[][] periodVolumes;
+    private double[] delaySeconds;
+    private double[] exited;
+    private int inNetwork;
+    private int maxInNetwork;
+    private long events;
+
+    public MesoscopicSimulation(TrafficFlowStore trafficFlow, EdgeMask closedEdges, long seed) {
+        this.graph = trafficFlow.getGraph();
+        this.closedEdges = closedEdges;
+        this.random = new SplittableRandom(seed);
+        this.edgeCount = graph.edgeCount();
+        int n = graph.nodeCount();
+        for (int minute = 0; minute < periodOfMinute.length; minute++) {
+            periodOfMinute[minute] = Period.at(minute).ordinal();
+        }
+        volumes = new double[PERIODS][edgeCount];
+        inflow = new double[PERIODS][n];
+        outflow = new double[PERIODS][n];
+        for (Period period : Period.values()) {
+            int p = period.ordinal();
+            for (int u = 0; u < n; u++) {
+                for (int e = graph.firstEdge(u); e < graph.lastEdge(u); e++) {
+                    if (closedEdges.isClosed(e)) continue;
+                    double volume = trafficFlow.flow(e, period);
+                    volumes[p][e] = volume;
+                    outflow[p][u] += volume;
+                    inflow[p][graph.target(e)] += volume;
+                }
+            }
+        }
+
+        freeFlowSeconds = new int[edgeCount];
+        serviceSeconds = new double[edgeCount];
+        storage = new int[edgeCount];
+        for (int e = 0; e < edgeCount; e++) {
+            double capacity = Math.max(graph.capacity(e), 1);
+            double lanes = Math.max(1, Math.round(capacity / LANE_CAPACITY));
+            freeFlowSeconds[e] = Math.max(1, (int) Math.round(graph.length(e) / FREE_FLOW_SPEED * 3600));
+            serviceSeconds[e] = PACKET_SIZE * 3600.0 / capacity;
+            storage[e] = Math.max(1, (int) (graph.length(e) * lanes * JAM_DENSITY / PACKET_SIZE));
+        }
+        queueHead = new int[edgeCount];
+        queueTail = new int[edgeCount];
+        queued = new int[edgeCount];
+        nextExit = new double[edgeCount];
+        scheduledAt = new int[edgeCount];
+        pendingDepartures = new int[edgeCount];
+        waitingHead = new int[edgeCount];
+        waitingNext = new int[edgeCount];
+        waitingOn = new int[edgeCount];
+
+        packetNext = new int[1024];
+        entryTime = new int[1024];
+        startTime = new int[1024];
+        edgesDriven = new int[1024];
+        nextEdge = new int[1024];
+    }
+
+    /** Simulates one day from midnight. */
+    public Result simulateDay() {
+        return run(SECONDS_PER_DAY);
+    }
+
+    /** Simulates from midnight for the given number of seconds; packets still on the road are not counted as trips. */
+    public Result run(int seconds) {
+        reset();
+        for (Period period : Period.values()) {
+            startDepartures(period, period.startMinute() * 60);
+        }
+        if (Period.at(0).startMinute() != 0) startDepartures(Period.at(0), 0);
+
+        int event;
+        while ((event = wheel.poll(seconds)) >= 0) {
+            events++;
+            int payload = event >>> 1;
+            if ((event & 1) == SERVE) serve(payload);
+            else depart(payload / PERIODS, payload % PERIODS);
+        }
+
+        double[] meanDelays = new double[edgeCount];
+        for (int e = 0; e < edgeCount; e++) {
+            meanDelays[e] = exited[e] > 0 ? delaySeconds[e] / exited[e] / 60 : 0;
+        }
+        double meanTrip = tripsCompleted > 0 ? tripSeconds / tripsCompleted / 60 : 0;
+        return new Result(tripsStarted, tripsCompleted, gridlockReleases, meanTrip, tripSeconds / 3600,
+                periodVolumes, meanDelays, maxInNetwork, events);
+    }
+
+    private void reset() {
+        wheel = new TimingWheel(0);
+        Arrays.fill(queueHead, -1);
+        Arrays.fill(queueTail, -1);
+        Arrays.fill(queued, 0);
+        Arrays.fill(nextExit, 0);
+        Arrays.fill(scheduledAt, -1);
+        Arrays.fill(pendingDepartures, 0);
+        Arrays.fill(waitingHead, -1);
+        Arrays.fill(waitingOn, -1);
+        freePacket = -1;
+        packetsUsed = 0;
+        tripsStarted = tripsCompleted = gridlockReleases = events = 0;
+        tripSeconds = 0;
+        inNetwork = maxInNetwork = 0;
+        periodVolumes = new double[PERIODS][edgeCount];
+        delaySeconds = new double[edgeCount];
+        exited = new double[edgeCount];
+    }
+
+    // Schedules the first departure of every edge that has trips starting on it in this period, at a
+    // random phase so that the sources do not all fire in the same second
+    private void startDepartures(Period period, int second) {
+        int p = period.ordinal();
+        for (int u = 0; u < graph.nodeCount(); u++) {
+            if (starting(p, u) <= 0) continue;
+            for (int e = graph.firstEdge(u); e < graph.lastEdge(u); e++) {
+                if (volumes[p][e] <= 0) continue;
+                double headway = headway(p, u, e);
+                wheel.schedule(second + (int) (random.nextDouble() * headway), (e * PERIODS + p) << 1 | DEPART);
+            }
+        }
+    }
+
+    private int period(int second) {
+        return periodOfMinute[second / 60 % Period.MINUTES_PER_DAY];
+    }
+
+    // Share of the packets arriving at the node that drive on
+    private double continuing(int p, int v) {
+        if (inflow[p][v] <= 0) return 0;
+        return Math.min(1, outflow[p][v] / inflow[p][v]) * (1 - 1 / MEAN_EDGES_PER_TRIP);
+    }
+
+    // Vehicles per hour starting at the node
+    private double starting(int p, int u) {
+        return outflow[p][u] - continuing(p, u) * inflow[p][u];
+    }
+
+    // Seconds between packets starting on edge e out of node u
+    private double headway(int p, int u, int e) {
+        double rate = starting(p, u) * volumes[p][e] / outflow[p][u];
+        return PACKET_SIZE * 3600.0 / rate;
+    }
+
+    private void depart(int edge, int p) {
+        int now = wheel.now();
+        if (period(now) != p) return;
+
+        tripsStarted += PACKET_SIZE;
+        if (queued[edge] < storage[edge]) {
+            enter(newPacket(now), edge, now);
+        } else {
+            pendingDepartures[edge]++;
+        }
+        int u = graph.target(graph.reverse(edge));
+        int headway = (int) Math.max(1, Math.round(headway(p, u, edge)));
+        wheel.schedule(now + headway, (edge * PERIODS + p) << 1 | DEPART);
+    }
+
+    private int newPacket(int now) {
+        int packet;
+        if (freePacket >= 0) {
+            packet = freePacket;
+            freePacket = packetNext[packet];
+        } else {
+            if (packetsUsed == packetNext.length) {
+                int capacity = packetsUsed * 2;
+                packetNext = Arrays.copyOf(packetNext, capacity);
+                entryTime = Arrays.copyOf(entryTime, capacity);
+                startTime = Arrays.copyOf(startTime, capacity);
+                edgesDriven = Arrays.copyOf(edgesDriven, capacity);
+                nextEdge = Arrays.copyOf(nextEdge, capacity);
+            }
+            packet = packetsUsed++;
+        }
+        startTime[packet] = now;
+        edgesDriven[packet] = 0;
+        inNetwork++;
+        maxInNetwork = Math.max(maxInNetwork, inNetwork);
+        return packet;
+    }
+
+    private void enter(int packet, int edge, int now) {
+        entryTime[packet] = now;
+        nextEdge[packet] = UNCHOSEN;
+        edgesDriven[packet]++;
+        packetNext[packet] = -1;
+        if (queueTail[edge] < 0) queueHead[edge] = packet;
+        else packetNext[queueTail[edge]] = packet;
+        queueTail[edge] = packet;
+        queued[edge]++;
+        if (queueHead[edge] == packet) {
+            scheduleServe(edge, (int) Math.ceil(Math.max(now + freeFlowSeconds[edge], nextExit[edge])));
+        }
+    }
+
+    // A later call replaces an earlier one; the stale event is skipped when it comes up
+    private void scheduleServe(int edge, int time) {
+        time = Math.max(time, wheel.now());
+        scheduledAt[edge] = time;
+        wheel.schedule(time, edge << 1 | SERVE);
+    }
+
+    // Lets the packet at the head of the edge's queue move on, if it may
+    private void serve(int edge) {
+        int now = wheel.now();
+        if (scheduledAt[edge] != now) return;
+        scheduledAt[edge] = -1;
+        int packet = queueHead[edge];
+        if (packet < 0) return;
+
+        int ready = (int) Math.ceil(Math.max(entryTime[packet] + freeFlowSeconds[edge], nextExit[edge]));
+        if (ready > now) {
+            scheduleServe(edge, ready);
+            return;
+        }
+
+        if (nextEdge[packet] == UNCHOSEN) nextEdge[packet] = chooseNext(packet, edge, now);
+        int next = nextEdge[packet];
+        int stuckUntil = entryTime[packet] + freeFlowSeconds[edge] + STUCK_SECONDS;
+        if (next >= 0 && queued[next] >= storage[next] && now < stuckUntil) {
+            // Wait for room downstream; the next edge wakes us when a packet leaves it
+            if (waitingOn[edge] != next) {
+                stopWaiting(edge);
+                waitingOn[edge] = next;
+                waitingNext[edge] = waitingHead[next];
+                waitingHead[next] = edge;
+            }
+            scheduleServe(edge, stuckUntil);
+            return;
+        }
+        // Still no room after STUCK_SECONDS: the packet is released from the gridlock by leaving the network
+        // instead of overfilling the next edge
+        boolean released = next >= 0 && queued[next] >= storage[next];
+        if (released) stopWaiting(edge);
+
+        queueHead[edge] = packetNext[packet];
+        if (queueHead[edge] < 0) queueTail[edge] = -1;
+        queued[edge]--;
+        nextExit[edge] = Math.max(nextExit[edge], now) + serviceSeconds[edge];
+        periodVolumes[period(now)][edge] += PACKET_SIZE;
+        exited[edge] += PACKET_SIZE;
+        delaySeconds[edge] += (double) PACKET_SIZE * (now - entryTime[packet] - freeFlowSeconds[edge]);
+
+        if (released) {
+            gridlockReleases += PACKET_SIZE;
+            packetNext[packet] = freePacket;
+            freePacket = packet;
+            inNetwork--;
+        } else if (next >= 0) {
+            enter(packet, next, now);
+        } else {
+            tripsCompleted += PACKET_SIZE;
+            tripSeconds += (double) PACKET_SIZE * (now - startTime[packet]);
+            packetNext[packet] = freePacket;
+            freePacket = packet;
+            inNetwork--;
+        }
+
+        roomFreed(edge, now);
+        if (queueHead[edge] >= 0) {
+            int head = queueHead[edge];
+            scheduleServe(edge, (int) Math.ceil(Math.max(entryTime[head] + freeFlowSeconds[edge], nextExit[edge])));
+        }
+    }
+
+    // A packet left the edge: let a held-back departure in, then wake whoever waits for the space
+    private void roomFreed(int edge, int now) {
+        if (pendingDepartures[edge] > 0 && queued[edge] < storage[edge]) {
+            pendingDepartures[edge]--;
+            enter(newPacket(now), edge, now);
+        }
+        if (queued[edge] >= storage[edge]) return;
+        int upstream = waitingHead[edge];
+        waitingHead[edge] = -1;
+        while (upstream >= 0) {
+            int following = waitingNext[upstream];
+            waitingOn[upstream] = -1;
+            scheduleServe(upstream, now);
+            upstream = following;
+        }
+    }
+
+    // Takes the edge off the waiting list it is on, if any; lists hold the few edges into one node
+    private void stopWaiting(int edge) {
+        int downstream = waitingOn[edge];
+        if (downstream < 0) return;
+        waitingOn[edge] = -1;
+        if (waitingHead[downstream] == edge) {
+            waitingHead[downstream] = waitingNext[edge];
+            return;
+        }
+        for (int e = waitingHead[downstream]; e >= 0; e = waitingNext[e]) {
+            if (waitingNext[e] == edge) {
+                waitingNext[e] = waitingNext[edge];
+                return;
+            }
+        }
+    }
+
+    // Ends the trip, or picks an outgoing edge in proportion to the period's volumes, avoiding a U-turn
+    // unless it is the only way on
+    private int chooseNext(int packet, int edge, int now) {
+        int p = period(now);
+        int v = graph.target(edge);
+        double leaving = outflow[p][v];
+        if (edgesDriven[packet] >= MAX_EDGES_PER_TRIP || random.nextDouble() >= continuing(p, v)) return TRIP_END;
+
+        int back = graph.reverse(edge);
+        double total = leaving - volumes[p][back];
+        if (total <= 0) return volumes[p][back] > 0 ? back : TRIP_END;
+        double pick = random.nextDouble() * total;
+        int chosen = TRIP_END;
+        for (int e = graph.firstEdge(v); e < graph.lastEdge(v); e++) {
+            if (e == back || volumes[p][e] <= 0) continue;
+            chosen = e;
+            pick -= volumes[p][e];
+            if (pick < 0) break;
+        }
+        return chosen;
+    }
+}
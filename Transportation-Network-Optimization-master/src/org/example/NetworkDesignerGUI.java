@@ -18,7 +18,8 @@ public class NetworkDesignerGUI extends JFrame {
     private Map<String, Node> nodes;
     private List<Road> roads;
     private List<Road> selectedRoads;
-    private InfrastructureNetworkDesigner designer;
+    private DynamicRoadNetwork network;
+    private boolean generated;
     private GraphPanel graphPanel;
     private JTable roadTable;
     private JComboBox<String> priorityComboBox;
@@ -29,7 +30,7 @@ public class NetworkDesignerGUI extends JFrame {
         try {
             this.nodes = DataLoader.loadNodes(conn);
             this.roads = removeDuplicateRoads(DataLoader.loadRoads(conn));
-            this.designer = new InfrastructureNetworkDesigner(nodes, this.roads);
+            this.network = new DynamicRoadNetwork(nodes, this.roads);
             this.selectedRoads = new ArrayList<>();
             initUI();
         } catch (SQLException e) {
@@ -87,7 +88,7 @@ public class NetworkDesignerGUI extends JFrame {
                 "Controls",
                 0, 0, null, new Color(74, 74, 74)
         ));
-        controlPanel.setMaximumSize(new Dimension(400, 350));
+        controlPanel.setMaximumSize(new Dimension(400, 400));
 
         gbc.gridx = 0;
         gbc.gridy = 0;
@@ -129,11 +130,26 @@ public class NetworkDesignerGUI extends JFrame {
         controlPanel.add(generateButton, gbc);
 
         gbc.gridy = 4;
+        JButton costButton = createStyledButton("Change Road Cost", new Color(47, 79, 79));
+        costButton.addActionListener(e -> changeRoadCost());
+        controlPanel.add(costButton, gbc);
+
+        gbc.gridy = 5;
+        JButton budgetButton = createStyledButton("Plan Within Budget", new Color(47, 79, 79));
+        budgetButton.addActionListener(e -> planWithinBudget());
+        controlPanel.add(budgetButton, gbc);
+
+        gbc.gridy = 6;
+        JButton steinerButton = createStyledButton("Connect Critical Facilities", new Color(47, 79, 79));
+        steinerButton.addActionListener(e -> connectCriticalFacilities());
+        controlPanel.add(steinerButton, gbc);
+
+        gbc.gridy = 7;
         JButton resetButton = createStyledButton("Reset", new Color(139, 69, 19));
         resetButton.addActionListener(e -> resetNetwork());
         controlPanel.add(resetButton, gbc);
 
-        gbc.gridy = 5;
+        gbc.gridy = 8;
         JButton closeButton = createStyledButton("Close", new Color(139, 69, 19));
         closeButton.addActionListener(e -> dispose());
         controlPanel.add(closeButton, gbc);
@@ -304,7 +320,16 @@ public class NetworkDesignerGUI extends JFrame {
         return uniqueRoads;
     }
 
+    // Only the roads that changed since the last run are added to or removed from the network
     private void generateNetwork() {
+        network.setCandidates(filterRoads());
+        generated = true;
+        selectedRoads = network.getSelectedRoads();
+        updateTable();
+        graphPanel.repaint();
+    }
+
+    private List<Road> filterRoads() {
         List<Road> filteredRoads = new ArrayList<>(roads);
 
         String priority = (String) priorityComboBox.getSelectedItem();
@@ -346,13 +371,100 @@ public class NetworkDesignerGUI extends JFrame {
             filteredRoads.removeIf(Road::isExisting);
         }
 
-        designer = new InfrastructureNetworkDesigner(nodes, filteredRoads);
-        selectedRoads = designer.buildOptimalRoadNetwork();
+        return filteredRoads;
+    }
+
+    // Reprices one planned road and shows which roads the network gains and loses because of it
+    private void changeRoadCost() {
+        List<Road> newRoads = roads.stream().filter(road -> !road.isExisting()).toList();
+        if (newRoads.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "There are no planned roads to reprice.");
+            return;
+        }
+        JComboBox<String> roadComboBox = createStyledComboBox(newRoads.stream()
+                .map(road -> roadName(road) + String.format(" (%.1fM EGP)", road.getCost()))
+                .toArray(String[]::new));
+        JTextField costField = new JTextField(10);
+        JPanel panel = new JPanel(new GridLayout(0, 1, 5, 5));
+        panel.add(new JLabel("Road:"));
+        panel.add(roadComboBox);
+        panel.add(new JLabel("New cost (M EGP):"));
+        panel.add(costField);
+        if (JOptionPane.showConfirmDialog(this, panel, "Change Road Cost", JOptionPane.OK_CANCEL_OPTION)
+                != JOptionPane.OK_OPTION) return;
+
+        double cost;
+        try {
+            cost = Double.parseDouble(costField.getText().trim());
+        } catch (NumberFormatException ex) {
+            cost = Double.NaN;
+        }
+        // parseDouble also takes "NaN", "Infinity" and negative numbers
+        if (!(cost >= 0) || Double.isInfinite(cost)) {
+            JOptionPane.showMessageDialog(this, "Invalid cost.", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        DynamicRoadNetwork.Delta delta = network.changeCost(newRoads.get(roadComboBox.getSelectedIndex()), cost);
+        // The new cost can move the road in or out of the cost filter
+        if (generated) delta = delta.andThen(network.setCandidates(filterRoads()));
+        selectedRoads = network.getSelectedRoads();
         updateTable();
         graphPanel.repaint();
+
+        StringBuilder message = new StringBuilder();
+        for (Road road : delta.added()) message.append("+ ").append(roadName(road)).append("\n");
+        for (Road road : delta.removed()) message.append("- ").append(roadName(road)).append("\n");
+        if (message.length() == 0) message.append("The selected network does not change.\n");
+        message.append(String.format("Total construction cost: %.1fM EGP", delta.totalCost()));
+        JOptionPane.showMessageDialog(this, message.toString());
+    }
+
+    // New roads that bring people closest to a facility for the budget, instead of a spanning network
+    private void planWithinBudget() {
+        String input = JOptionPane.showInputDialog(this, "Budget (M EGP):");
+        if (input == null) return;
+        double budget;
+        try {
+            budget = Double.parseDouble(input.trim());
+        } catch (NumberFormatException ex) {
+            budget = Double.NaN;
+        }
+        if (!(budget >= 0) || Double.isInfinite(budget)) {
+            JOptionPane.showMessageDialog(this, "Invalid budget.", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        // Built on every run, so costs changed in the meantime are picked up
+        BudgetNetworkDesigner.Plan plan = new BudgetNetworkDesigner(nodes, roads).plan(budget);
+        selectedRoads = new ArrayList<>(plan.roads());
+        updateTable();
+        graphPanel.repaint();
+        JOptionPane.showMessageDialog(this, String.format(
+                "%d new roads for %.1fM EGP%nMean time to the nearest facility: %.1f -> %.1f minutes",
+                plan.roads().size(), plan.totalCost(), plan.meanMinutesBefore(), plan.meanMinutesAfter()));
+    }
+
+    // Backbone between hospitals, airports and high-population areas only, instead of every node
+    private void connectCriticalFacilities() {
+        InfrastructureNetworkDesigner designer = new InfrastructureNetworkDesigner(nodes, roads);
+        List<String> terminals = designer.criticalNodes();
+        selectedRoads = designer.buildSteinerNetwork(terminals);
+        updateTable();
+        graphPanel.repaint();
+        JOptionPane.showMessageDialog(this, String.format(
+                "%d roads connect %d critical nodes%nConstruction cost of new roads: %.1fM EGP",
+                selectedRoads.size(), terminals.size(), designer.calculateTotalConstructionCost(selectedRoads)));
+    }
+
+    private String roadName(Road road) {
+        Node fromNode = nodes.get(road.getFromId());
+        Node toNode = nodes.get(road.getToId());
+        return (fromNode != null ? fromNode.getName() : road.getFromId()) + " - " +
+                (toNode != null ? toNode.getName() : road.getToId());
     }
 
     private void resetNetwork() {
+        network.setCandidates(List.of());
+        generated = false;
         selectedRoads.clear();
         priorityComboBox.setSelectedIndex(0);
         costDistanceComboBox.setSelectedIndex(0);
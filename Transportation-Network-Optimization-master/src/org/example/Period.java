@@ -0,0 +1,66 @@
+package org.example;
+
+/**
+ * The four time-of-day periods of the TrafficFlow table.
+ */
+public enum Period {
+    MORNING_PEAK("Morning Peak", "MorningPeak", 7 * 60, 10 * 60),
+    AFTERNOON("Afternoon", "Afternoon", 10 * 60, 16 * 60),
+    EVENING_PEAK("Evening Peak", "EveningPeak", 16 * 60, 20 * 60),
+    NIGHT("Night", "Night", 20 * 60, 7 * 60);
+
+    public static final int MINUTES_PER_DAY = 24 * 60;
+
+    private final String label;
+    private final String column;
+    private final int startMinute;
+    private final int endMinute;
+
+    Period(String label, String column, int startMinute, int endMinute) {
+        this.label = label;
+        this.column = column;
+        this.startMinute = startMinute;
+        this.endMinute = endMinute;
+    }
+
+    /** The name shown in the time-of-day combo boxes, e.g. "Morning Peak". */
+    public String label() { return label; }
+
+    /** The TrafficFlow column name, e.g. "MorningPeak". */
+    public String column() { return column; }
+
+    /** Clock time the period starts at, in minutes after midnight. */
+    public int startMinute() { return startMinute; }
+
+    /** Length of the period in minutes; Night wraps past midnight. */
+    public int lengthMinutes() {
+        return Math.floorMod(endMinute - startMinute, MINUTES_PER_DAY);
+    }
+
+    /** Middle of the period in minutes after midnight; Night wraps past midnight. */
+    public double midpoint() {
+        return (startMinute + lengthMinutes() / 2.0) % MINUTES_PER_DAY;
+    }
+
+    /** The period a clock time falls in. Minutes outside 0..1439 wrap around the day. */
+    public static Period at(double minuteOfDay) {
+        double t = minuteOfDay % MINUTES_PER_DAY;
+        if (t < 0) t += MINUTES_PER_DAY;
+        for (Period period : values()) {
+            if (period.startMinute < period.endMinute ? t >= period.startMinute && t < period.endMinute
+                    : t >= period.startMinute || t < period.endMinute) return period;
+        }
+        return NIGHT;
+    }
+
+    /**
+     * Accepts either the combo box label or the column name. Anything else falls back to Night,
+     * like the default branch of the old timeOfDay switches.
+     */
+    public static Period fromLabel(String timeOfDay) {
+        for (Period period : values()) {
+            if (period.label.equals(timeOfDay) || period.column.equals(timeOfDay)) return period;
+        }
+        return NIGHT;
+    }
+}
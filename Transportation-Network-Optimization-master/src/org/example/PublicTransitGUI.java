@@ -18,10 +18,12 @@ import java.io.IOException; // Added for IOException
 import java.awt.image.RescaleOp; // Added for RescaleOp
 
 public class PublicTransitGUI extends JFrame {
+    private static final int ALTERNATIVE_ROUTES = 3;
+
     private Connection conn;
     private Map<String, Node> nodes;
     private List<Road> roads;
-    private Map<String, Map<String, Integer>> trafficFlow;
+    private TrafficFlowStore trafficFlow;
     private Map<String, List<String>> transitLines;
     private Map<String, String> lineTypes;
     private Map<String, Integer> dailyPassengers;
@@ -48,7 +50,7 @@ public class PublicTransitGUI extends JFrame {
         try {
             nodes = DataLoader.loadNodes(conn);
             roads = DataLoader.loadRoads(conn);
-            trafficFlow = DataLoader.loadTrafficFlow(conn);
+            trafficFlow = DataLoader.loadTrafficFlow(conn, RoadGraph.build(nodes, roads, true));
             loadTransitLines(conn);
             loadVehicleCounts(conn);
             optimizer = new PublicTransitOptimizer(nodes, roads, trafficFlow, transitLines);
@@ -393,12 +395,8 @@ public class PublicTransitGUI extends JFrame {
             String to = stops.get(i);
             Road road = getRoad(from, to);
             if (road != null) {
-                String key = from + "-" + to;
-                if (!trafficFlow.containsKey(key)) key = to + "-" + from;
-                Map<String, Integer> traffic = trafficFlow.get(key);
-                double baseTime = road.getDistance() / 50.0 * 60;
-                double congestion = calculateCongestion(road.getCapacity(), timeOfDayEnglish, traffic);
-                segmentTimes.add(baseTime * (1 + congestion));
+                int edge = trafficFlow.edge(from, to);
+                segmentTimes.add(busTravelTime(road, timeOfDayEnglish, edge));
             } else {
                 segmentTimes.add(10.0);
             }
@@ -485,31 +483,23 @@ public class PublicTransitGUI extends JFrame {
                 timeOfDay.equals("Afternoon") ? "Afternoon" :
                         timeOfDay.equals("Evening Peak") ? "EveningPeak" : "Night";
 
-        Map<String, List<Dijkstra.Edge>> graph = networkDesigner.buildGraph(timeOfDayEnglish);
+        RoadGraph graph = networkDesigner.getGraph();
         double originalTime = calculateOriginalTravelTime(stops, timeOfDay);
 
-        Dijkstra.PathResult pathResult = Dijkstra.findShortestPath(graph, start, end, timeOfDayEnglish, trafficFlow, closedRoads);
-        if (pathResult.path.isEmpty() || pathResult.path.size() < 2) {
+        // Ranked routes between the terminals; the alternative is the best one that is not the line itself
+        EdgeMask closedEdges = EdgeMask.of(graph, closedRoads);
+        List<Dijkstra.PathResult> routes = KShortestPaths.find(graph, start, end, ALTERNATIVE_ROUTES + 1, timeOfDayEnglish, trafficFlow, closedEdges);
+        if (routes.isEmpty() || routes.get(0).path.size() < 2) {
             resultTextArea.setText("No valid alternative path found for " + selectedDisplayName + ". Check if there are enough roads in the database connecting the stops.");
             return;
         }
-
-        if (pathResult.path.equals(stops)) {
-            Map<String, List<Dijkstra.Edge>> modifiedGraph = new HashMap<>(graph);
-            for (int i = 0; i < stops.size() - 1; i++) {
-                String from = stops.get(i);
-                String to = stops.get(i + 1);
-                List<Dijkstra.Edge> edges = modifiedGraph.get(from);
-                if (edges != null) {
-                    edges.removeIf(edge -> edge.to.equals(to));
-                }
-            }
-            pathResult = Dijkstra.findShortestPath(modifiedGraph, start, end, timeOfDayEnglish, trafficFlow, closedRoads);
-            if (pathResult.path.isEmpty() || pathResult.path.size() < 2) {
-                resultTextArea.setText("No valid alternative path found for " + selectedDisplayName + " after excluding the original route. Check road connectivity in the database.");
-                return;
-            }
+        routes.removeIf(route -> route.path.equals(stops));
+        routes = routes.subList(0, Math.min(ALTERNATIVE_ROUTES, routes.size()));
+        if (routes.isEmpty()) {
+            resultTextArea.setText("No valid alternative path found for " + selectedDisplayName + " after excluding the original route. Check road connectivity in the database.");
+            return;
         }
+        Dijkstra.PathResult pathResult = routes.get(0);
 
         List<Double> segmentTimes = new ArrayList<>();
         boolean validPath = true;
@@ -518,12 +508,8 @@ public class PublicTransitGUI extends JFrame {
             String to = pathResult.path.get(i);
             Road road = getRoad(from, to);
             if (road != null) {
-                String key = from + "-" + to;
-                if (!trafficFlow.containsKey(key)) key = to + "-" + from;
-                Map<String, Integer> traffic = trafficFlow.get(key);
-                double baseTime = road.getDistance() / 50.0 * 60;
-                double congestion = calculateCongestion(road.getCapacity(), timeOfDayEnglish, traffic);
-                segmentTimes.add(baseTime * (1 + congestion));
+                int edge = trafficFlow.edge(from, to);
+                segmentTimes.add(busTravelTime(road, timeOfDayEnglish, edge));
             } else {
                 validPath = false;
                 break;
@@ -593,8 +579,13 @@ public class PublicTransitGUI extends JFrame {
             tableModel.addRow(row);
         }
 
-        resultTextArea.setText(String.format("Alternative Route for %s:\n- Original Time: %.1f min\n- Optimized Time: %.1f min\n- Vehicles Used: %d\n- Travel Time Reduced by: %.1f%%\nRoute: %s",
+        StringBuilder result = new StringBuilder(String.format("Alternative Route for %s:\n- Original Time: %.1f min\n- Optimized Time: %.1f min\n- Vehicles Used: %d\n- Travel Time Reduced by: %.1f%%\nRoute: %s",
                 selectedDisplayName, originalTime, bestTime, bestVehicles, timeImprovement, pathResult.path.toString()));
+        for (int i = 1; i < routes.size(); i++) {
+            Dijkstra.PathResult route = routes.get(i);
+            result.append(String.format("\nAlternative %d: %.1f km, %.1f min, %s", i + 1, route.distance, route.time, route.path));
+        }
+        resultTextArea.setText(result.toString());
 
         highlightedPath = pathResult.path;
         currentLineStops = null;
@@ -638,10 +629,8 @@ public class PublicTransitGUI extends JFrame {
             String to = stops.get(i + 1);
             Road road = getRoad(from, to);
             if (road != null) {
-                String key = from + "-" + to;
-                if (!trafficFlow.containsKey(key)) key = to + "-" + from;
-                Map<String, Integer> traffic = trafficFlow.get(key);
-                double travelTime = calculateTravelTime(road.getDistance(), road.getCapacity(), timeOfDayEnglish, traffic);
+                int edge = trafficFlow.edge(from, to);
+                double travelTime = calculateTravelTime(road.getDistance(), timeOfDayEnglish, edge);
                 totalTime += travelTime > 0 ? travelTime : 5.0;
                 System.out.println("Original Travel Time " + from + " to " + to + ": " + travelTime + " min");
             } else {
@@ -652,15 +641,23 @@ public class PublicTransitGUI extends JFrame {
         return totalTime > 0 ? totalTime : 10.0;
     }
 
-    private double calculateTravelTime(double distance, int capacity, String timeOfDay, Map<String, Integer> traffic) {
-        double baseTime = distance / 50.0 * 60;
-        double congestion = traffic != null ? calculateCongestion(capacity, timeOfDay, traffic) : 0.3;
-        return baseTime * (1 + congestion) > 0 ? baseTime * (1 + congestion) : 5.0;
+    private double calculateTravelTime(double distance, String timeOfDay, int edge) {
+        double travelTime = trafficFlow.hasFlow(edge)
+                ? busTimes(timeOfDay)[edge]
+                : distance / WeightProfiles.VehicleProfile.BUS.speed() * 60 * 1.3;
+        return travelTime > 0 ? travelTime : 5.0;
+    }
+
+    // Bus time from the period's BUS profile; roads without traffic data guess the congestion from capacity
+    private double busTravelTime(Road road, String timeOfDay, int edge) {
+        if (trafficFlow.hasFlow(edge)) return busTimes(timeOfDay)[edge];
+        double baseTime = road.getDistance() / WeightProfiles.VehicleProfile.BUS.speed() * 60;
+        double congestion = road.getCapacity() <= 0 ? 0.5 : Math.min(500.0 / road.getCapacity(), 1.0);
+        return baseTime * (1 + congestion);
     }
 
-    private double calculateCongestion(int capacity, String timeOfDay, Map<String, Integer> traffic) {
-        double trafficVolume = traffic != null ? traffic.getOrDefault(timeOfDay, 500) : 500;
-        return capacity > 0 ? Math.min(trafficVolume / capacity, 1.0) : 0.5;
+    private double[] busTimes(String timeOfDay) {
+        return trafficFlow.getWeights().travelTimes(WeightProfiles.VehicleProfile.BUS, Period.fromLabel(timeOfDay));
     }
 
     private Road getRoad(String fromId, String toId) {
@@ -5,10 +5,10 @@ import java.util.*;
 public class PublicTransitOptimizer {
     private Map<String, Node> nodes;
     private List<Road> roads;
-    private Map<String, Map<String, Integer>> trafficFlow;
+    private TrafficFlowStore trafficFlow;
     private Map<String, List<String>> transitLines;
 
-    public PublicTransitOptimizer(Map<String, Node> nodes, List<Road> roads, Map<String, Map<String, Integer>> trafficFlow, Map<String, List<String>> transitLines) {
+    public PublicTransitOptimizer(Map<String, Node> nodes, List<Road> roads, TrafficFlowStore trafficFlow, Map<String, List<String>> transitLines) {
         this.nodes = nodes;
         this.roads = roads;
         this.trafficFlow = trafficFlow;
@@ -39,14 +39,10 @@ public class PublicTransitOptimizer {
                 System.out.println("Warning: No road between " + from + " and " + to + ", using default 10 min.");
                 segmentTimes.add(10.0);
             } else {
-                String key = from + "-" + to;
-                if (!trafficFlow.containsKey(key)) key = to + "-" + from;
-                Map<String, Integer> traffic = trafficFlow.get(key);
-                double baseTime = road.getDistance() / 50.0 * 60; // 50 km/h
-                double congestion = calculateCongestion(road.getCapacity(), timeOfDay, traffic);
-                double travelTime = baseTime * (1 + congestion);
+                int edge = trafficFlow.edge(from, to);
+                double travelTime = busTravelTime(road, timeOfDay, edge);
                 segmentTimes.add(travelTime > 0 ? travelTime : 5.0);
-                System.out.println("Segment " + from + " to " + to + ": Base Time = " + baseTime + ", Congestion = " + congestion + ", Total = " + travelTime + " min");
+                System.out.println("Segment " + from + " to " + to + ": Total = " + travelTime + " min");
             }
         }
 
@@ -102,9 +98,14 @@ public class PublicTransitOptimizer {
         return new TransitSchedule(lineName, lineType, stops, times, totalVehicles, frequency);
     }
 
-    private double calculateCongestion(int capacity, String timeOfDay, Map<String, Integer> traffic) {
-        double trafficVolume = traffic != null ? traffic.getOrDefault(timeOfDay, 500) : 500;
-        return capacity > 0 ? Math.min(trafficVolume / capacity, 1.0) : 0.5;
+    // Bus time from the period's BUS profile; roads without traffic data guess the congestion from capacity
+    private double busTravelTime(Road road, String timeOfDay, int edge) {
+        if (trafficFlow.hasFlow(edge)) {
+            return trafficFlow.getWeights().travelTimes(WeightProfiles.VehicleProfile.BUS, Period.fromLabel(timeOfDay))[edge];
+        }
+        double baseTime = road.getDistance() / WeightProfiles.VehicleProfile.BUS.speed() * 60;
+        double congestion = road.getCapacity() <= 0 ? 0.5 : Math.min(500.0 / road.getCapacity(), 1.0);
+        return baseTime * (1 + congestion);
     }
 
     private Road getRoad(String fromId, String toId) {
@@ -0,0 +1,145 @@
+package org.example;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * Response time statistics from every origin node to every hospital in every period.
+ * Each (hospital, period) pair is one full backward search over the route costs, so a run is
+ * hospitals x periods searches spread over the fork/join pool, with no sampling and no cap.
+ * Results are handed to a listener as each pair finishes, from whichever worker finished it.
+ */
+public class ResponseAnalytics {
+
+    /** Per-edge inputs for one period. Routes follow routeCosts; the other two are summed along the chosen route. */
+    public record PeriodCosts(double[] routeCosts, double[] baselineCosts, double[] congestion) {}
+
+    /** Nearest-rank percentiles over a set of response times. */
+    public record Distribution(int count, double mean, double p50, double p90, double p99, double worst) {
+        public static Distribution of(double[] times) {
+            double[] sorted = times.clone();
+            Arrays.sort(sorted);
+            int n = sorted.length;
+            if (n == 0) return new Distribution(0, 0, 0, 0, 0, 0);
+            double sum = 0;
+            for (double t : sorted) sum += t;
+            return new Distribution(n, sum / n, percentile(sorted, 0.5), percentile(sorted, 0.9),
+                    percentile(sorted, 0.99), sorted[n - 1]);
+        }
+
+        private static double percentile(double[] sorted, double p) {
+            int rank = (int) Math.ceil(p * sorted.length);
+            return sorted[Math.max(0, rank - 1)];
+        }
+    }
+
+    /** Statistics for one hospital in one period. times holds one entry per origin that can reach it. */
+    public record Result(String hospitalId, Period period, double[] times, Distribution distribution,
+                         double meanBaseline, double meanCongestion, List<String> worstPath) {}
+
+    private final RoadGraph graph;
+    private final EdgeMask closedEdges;
+    private final int[] hospitals;
+    private final boolean[] origin;
+
+    /** Origins and hospitals are node IDs; IDs that are not in the graph are ignored. */
+    public ResponseAnalytics(RoadGraph graph, EdgeMask closedEdges, Collection<String> hospitalIds,
+                             Collection<String> originIds) {
+        this.graph = graph;
+        this.closedEdges = closedEdges;
+        this.hospitals = hospitalIds.stream().mapToInt(graph::indexOf).filter(i -> i >= 0).toArray();
+        this.origin = new boolean[graph.nodeCount()];
+        for (String id : originIds) {
+            int node = graph.indexOf(id);
+            if (node >= 0) origin[node] = true;
+        }
+    }
+
+    public List<Result> run(Map<Period, PeriodCosts> costs, Consumer<Result> listener) {
+        List<Period> periods = new ArrayList<>(costs.keySet());
+        Result[] results = new Result[hospitals.length * periods.size()];
+        IntStream.range(0, results.length).parallel().forEach(k -> {
+            Period period = periods.get(k % periods.size());
+            results[k] = analyze(hospitals[k / periods.size()], period, costs.get(period));
+            listener.accept(results[k]);
+        });
+        return Arrays.asList(results);
+    }
+
+    /** Distribution over the times of several results, e.g. one hospital across all periods. */
+    public static Distribution combine(Collection<Result> results) {
+        int n = 0;
+        for (Result r : results) n += r.times().length;
+        double[] all = new double[n];
+        int i = 0;
+        for (Result r : results) {
+            System.arraycopy(r.times(), 0, all, i, r.times().length);
+            i += r.times().length;
+        }
+        return Distribution.of(all);
+    }
+
+    private Result analyze(int hospital, Period period, PeriodCosts costs) {
+        int n = graph.nodeCount();
+        double[] time = new double[n];
+        int[] next = new int[n];
+        int[] order = new int[n];
+        int settled = 0;
+        Arrays.fill(time, Double.POSITIVE_INFINITY);
+        Arrays.fill(next, -1);
+
+        // Backwards from the hospital: next[u] is the first edge of u's route to it
+        IndexedHeap heap = new IndexedHeap(n);
+        time[hospital] = 0.0;
+        heap.insert(hospital, 0.0);
+        while (!heap.isEmpty()) {
+            int u = heap.poll();
+            order[settled++] = u;
+            for (int e = graph.firstEdge(u); e < graph.lastEdge(u); e++) {
+                int edge = graph.reverse(e);
+                if (closedEdges.isClosed(edge)) continue;
+                double w = costs.routeCosts()[edge];
+                if (w == Double.POSITIVE_INFINITY) continue;
+                int v = graph.target(e);
+                double t = time[u] + w;
+                if (t < time[v]) {
+                    time[v] = t;
+                    next[v] = edge;
+                    heap.insertOrDecrease(v, t);
+                }
+            }
+        }
+
+        // A node is settled after the next node on its route, so one pass in settle order sums along every route
+        double[] baseline = new double[n];
+        double[] congestion = new double[n];
+        int[] hops = new int[n];
+        double[] times = new double[settled];
+        double baselineTotal = 0, congestionTotal = 0;
+        int count = 0, worst = -1;
+        for (int k = 1; k < settled; k++) {
+            int u = order[k];
+            int edge = next[u];
+            int v = graph.target(edge);
+            baseline[u] = baseline[v] + costs.baselineCosts()[edge];
+            congestion[u] = congestion[v] + costs.congestion()[edge];
+            hops[u] = hops[v] + 1;
+            if (!origin[u] || u == hospital) continue;
+            times[count++] = time[u];
+            baselineTotal += baseline[u];
+            congestionTotal += congestion[u] / hops[u];
+            if (worst < 0 || time[u] > time[worst]) worst = u;
+        }
+
+        List<String> worstPath = new ArrayList<>();
+        for (int u = worst; u >= 0 && u != hospital; u = graph.target(next[u])) {
+            worstPath.add(graph.nodeId(u));
+        }
+        if (worst >= 0) worstPath.add(graph.nodeId(hospital));
+
+        times = Arrays.copyOf(times, count);
+        return new Result(graph.nodeId(hospital), period, times, Distribution.of(times),
+                count > 0 ? baselineTotal / count : 0, count > 0 ? congestionTotal / count : 0, worstPath);
+    }
+}
@@ -0,0 +1,137 @@
+package org.example;
+
+import java.util.*;
+
+/**
+ * Immutable compressed sparse row (CSR) view of the road network.
+ * Nodes are numbered 0..n-1 and every road contributes one edge in each direction,
+ * so the outgoing edges of node u are offsets[u] .. offsets[u + 1] - 1.
+ */
+public class RoadGraph {
+    private final String[] nodeIds;
+    private final Map<String, Integer> index;
+    private final int[] offsets;
+    private final int[] targets;
+    private final double[] length;
+    private final int[] capacity;
+    private final int[] road;
+    private final int[] reverse;
+    private final List<Road> roads;
+
+    private RoadGraph(String[] nodeIds, Map<String, Integer> index, int[] offsets, int[] targets,
+                      double[] length, int[] capacity, int[] road, int[] reverse, List<Road> roads) {
+        this.nodeIds = nodeIds;
+        this.index = index;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.length = length;
+        this.capacity = capacity;
+        this.road = road;
+        this.reverse = reverse;
+        this.roads = roads;
+    }
+
+    /**
+     * Builds the graph from DataLoader output. With existingOnly set, proposed roads are skipped.
+     */
+    public static RoadGraph build(Map<String, Node> nodes, List<Road> roads, boolean existingOnly) {
+        Map<String, Integer> index = new HashMap<>();
+        List<String> ids = new ArrayList<>(nodes.keySet());
+        Collections.sort(ids);
+        for (String id : ids) {
+            index.put(id, index.size());
+        }
+
+        List<Road> used = new ArrayList<>();
+        for (Road r : roads) {
+            if (existingOnly && !r.isExisting()) continue;
+            // Roads may reference nodes that are missing from the Nodes table
+            index.computeIfAbsent(r.fromId, k -> { ids.add(k); return ids.size() - 1; });
+            index.computeIfAbsent(r.toId, k -> { ids.add(k); return ids.size() - 1; });
+            used.add(r);
+        }
+
+        int n = ids.size();
+        int m = used.size() * 2;
+        int[] offsets = new int[n + 1];
+        for (Road r : used) {
+            offsets[index.get(r.fromId) + 1]++;
+            offsets[index.get(r.toId) + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+
+        int[] targets = new int[m];
+        double[] length = new double[m];
+        int[] capacity = new int[m];
+        int[] road = new int[m];
+        int[] reverse = new int[m];
+        int[] next = Arrays.copyOf(offsets, n);
+        for (int i = 0; i < used.size(); i++) {
+            Road r = used.get(i);
+            int u = index.get(r.fromId);
+            int v = index.get(r.toId);
+            int e = next[u]++;
+            targets[e] = v;
+            length[e] = r.getDistance();
+            capacity[e] = r.getCapacity();
+            road[e] = i;
+            int back = next[v]++;
+            targets[back] = u;
+            length[back] = r.getDistance();
+            capacity[back] = r.getCapacity();
+            road[back] = i;
+            reverse[e] = back;
+            reverse[back] = e;
+        }
+
+        return new RoadGraph(ids.toArray(new String[0]), index, offsets, targets, length, capacity, road, reverse,
+                Collections.unmodifiableList(used));
+    }
+
+    public int nodeCount() { return nodeIds.length; }
+    public int edgeCount() { return targets.length; }
+
+    /** Returns the dense index of a node ID, or -1 if the node is not in the graph. */
+    public int indexOf(String nodeId) {
+        Integer i = index.get(nodeId);
+        return i != null ? i : -1;
+    }
+
+    public String nodeId(int node) { return nodeIds[node]; }
+
+    public int firstEdge(int node) { return offsets[node]; }
+    public int lastEdge(int node) { return offsets[node + 1]; }
+    public int target(int edge) { return targets[edge]; }
+    public double length(int edge) { return length[edge]; }
+    public int capacity(int edge) { return capacity[edge]; }
+
+    /** The opposite direction of the same road, used to walk edges backwards. */
+    public int reverse(int edge) { return reverse[edge]; }
+
+    /** The road an edge was built from; both directions of a road share it. */
+    public Road road(int edge) { return roads.get(road[edge]); }
+
+    /** Returns the first edge from -> to, or -1 if the two nodes are not adjacent. */
+    public int findEdge(int from, int to) {
+        if (from < 0 || to < 0) return -1;
+        for (int e = offsets[from]; e < offsets[from + 1]; e++) {
+            if (targets[e] == to) return e;
+        }
+        return -1;
+    }
+
+    public int findEdge(String fromId, String toId) {
+        return findEdge(indexOf(fromId), indexOf(toId));
+    }
+
+    /** Converts a list of node indices to the node IDs the GUI works with. */
+    public List<String> toIds(int[] path, int size) {
+        List<String> ids = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            ids.add(nodeIds[path[i]]);
+        }
+        return ids;
+    }
+}
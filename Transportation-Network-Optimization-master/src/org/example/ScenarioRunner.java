@@ -0,0 +1,267 @@
+package org.example;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * What-if runner for road closures and incidents. Every scenario closes some roads (both directions) and
+ * slows others down, and is measured against the unchanged network on two things: the travel time between
+ * a fixed sample of origin and destination nodes, and how many nodes can reach a facility (hospital)
+ * within the coverage time. Scenarios run in parallel; they all share the one graph and weight array and
+ * each gets its own EdgeMask overlay, so nothing of graph size is copied unless a scenario has incidents.
+ * Closures and incidents only make edges dearer, so a scenario searches again only from the origins whose
+ * unchanged shortest path tree uses one of its edges, and repairs a copy of the unchanged facility
+ * coverage only if that uses one of them.
+ * rankLinks() then averages the impact over every scenario a road appears in to find the critical links.
+ */
+public class ScenarioRunner {
+    // An incident (crash, broken-down vehicle) multiplies the travel time of the road
+    public static final double INCIDENT_FACTOR = 3.0;
+    public static final double COVERAGE_MINUTES = 15.0;
+
+    /** Edges are one direction of each road; closures and incidents apply to both directions. */
+    public record Scenario(int[] closedEdges, int[] incidentEdges) {}
+
+    /**
+     * delay is the mean extra minutes over the sampled pairs that are connected both before and after,
+     * disconnectedPairs the pairs the scenario cuts off, coverageLoss the drop in the share of nodes within
+     * the coverage time of a facility, and meanResponse the mean time to the nearest facility.
+     */
+    public record Outcome(Scenario scenario, double meanTime, double delay, int disconnectedPairs,
+                          double coverage, double coverageLoss, double meanResponse) {}
+
+    /** Average impact of the scenarios that close or block a road, given by one of its edges. */
+    public record LinkImpact(int edge, int scenarios, double meanDelay, double meanDisconnected,
+                             double meanCoverageLoss) {}
+
+    private final RoadGraph graph;
+    private final double[] weights;
+    private final EdgeMask baseClosures;
+    private final int[] origins;
+    private final int[] destinations;
+    private final int[] facilities;
+    private final List<String> facilityIds;
+    private final TravelTimeMatrix baseMatrix;
+    private final double[][] baseTimes;
+    private final double baseMeanTime;
+    private final FacilityCoverage baseFacilityCoverage;
+    private final double baseCoverage;
+
+    /** Weights are the per-edge travel times in minutes; infinite weights and baseClosures are never used. */
+    public ScenarioRunner(RoadGraph graph, double[] weights, EdgeMask baseClosures,
+                          int[] origins, int[] destinations, int[] facilities) {
+        this.graph = graph;
+        this.weights = weights;
+        this.baseClosures = baseClosures;
+        this.origins = origins;
+        this.destinations = destinations;
+        this.facilities = facilities;
+        this.facilityIds = Arrays.stream(facilities).mapToObj(graph::nodeId).collect(Collectors.toList());
+        this.baseMatrix = TravelTimeMatrix.compute(graph, weights, baseClosures, origins, destinations, true);
+        this.baseTimes = baseMatrix.getTimes();
+        this.baseMeanTime = meanTime(baseTimes);
+        this.baseFacilityCoverage = FacilityCoverage.build(graph, weights, baseClosures, facilityIds);
+        this.baseCoverage = coverage(baseFacilityCoverage);
+    }
+
+    /**
+     * Runner on car travel times for the period, with sampleSize random origins and destinations and the
+     * Medical nodes as facilities.
+     */
+    public static ScenarioRunner forPeriod(TrafficFlowStore trafficFlow, Map<String, Node> nodes, Period period,
+                                           EdgeMask closedEdges, int sampleSize, long seed) {
+        RoadGraph graph = trafficFlow.getGraph();
+        Random random = new Random(seed);
+        int sample = Math.min(sampleSize, graph.nodeCount());
+        int[] origins = random.ints(0, graph.nodeCount()).distinct().limit(sample).toArray();
+        int[] destinations = random.ints(0, graph.nodeCount()).distinct().limit(sample).toArray();
+        int[] hospitals = nodes.values().stream()
+                .filter(n -> "Medical".equals(n.getNodeType()))
+                .mapToInt(n -> graph.indexOf(n.getId()))
+                .filter(i -> i >= 0)
+                .toArray();
+        return new ScenarioRunner(graph, Dijkstra.edgeTimes(period, trafficFlow), closedEdges,
+                origins, destinations, hospitals);
+    }
+
+    /** One edge per road that is open and has a travel time, the roads scenarios can pick from. */
+    public int[] candidateEdges() {
+        return IntStream.range(0, graph.edgeCount())
+                .filter(e -> e < graph.reverse(e) && usable(e) && usable(graph.reverse(e)))
+                .toArray();
+    }
+
+    private boolean usable(int edge) {
+        return !baseClosures.isClosed(edge) && weights[edge] != Double.POSITIVE_INFINITY;
+    }
+
+    /** One scenario per candidate road, closing just that road. */
+    public List<Scenario> singleClosures() {
+        List<Scenario> scenarios = new ArrayList<>();
+        for (int edge : candidateEdges()) {
+            scenarios.add(new Scenario(new int[]{edge}, new int[0]));
+        }
+        return scenarios;
+    }
+
+    /** Scenarios with the given numbers of distinct random closed and incident roads each. */
+    public List<Scenario> randomScenarios(int count, int closures, int incidents, long seed) {
+        int[] pool = candidateEdges();
+        SplittableRandom random = new SplittableRandom(seed);
+        List<Scenario> scenarios = new ArrayList<>(count);
+        int picks = Math.min(closures + incidents, pool.length);
+        for (int s = 0; s < count; s++) {
+            // Partial Fisher-Yates shuffle: the first picks entries are a random sample without repeats,
+            // whatever order the previous scenario left the pool in
+            for (int i = 0; i < picks; i++) {
+                int j = i + random.nextInt(pool.length - i);
+                int swap = pool[i];
+                pool[i] = pool[j];
+                pool[j] = swap;
+            }
+            int closed = Math.min(closures, picks);
+            scenarios.add(new Scenario(Arrays.copyOfRange(pool, 0, closed), Arrays.copyOfRange(pool, closed, picks)));
+        }
+        return scenarios;
+    }
+
+    /** Outcomes in the order of the scenarios. */
+    public List<Outcome> run(List<Scenario> scenarios) {
+        return scenarios.parallelStream().map(this::evaluate).collect(Collectors.toList());
+    }
+
+    public Outcome evaluate(Scenario scenario) {
+        EdgeMask closures = baseClosures.overlay();
+        for (int edge : scenario.closedEdges()) {
+            closures.close(edge);
+            closures.close(graph.reverse(edge));
+        }
+        double[] scenarioWeights = weights;
+        if (scenario.incidentEdges().length > 0) {
+            scenarioWeights = weights.clone();
+            for (int edge : scenario.incidentEdges()) {
+                scenarioWeights[edge] *= INCIDENT_FACTOR;
+                scenarioWeights[graph.reverse(edge)] *= INCIDENT_FACTOR;
+            }
+        }
+        int[] changed = IntStream.concat(Arrays.stream(scenario.closedEdges()), Arrays.stream(scenario.incidentEdges()))
+                .flatMap(e -> IntStream.of(e, graph.reverse(e)))
+                .toArray();
+
+        double[][] times = searchAffected(changed, scenarioWeights, closures);
+        double extra = 0;
+        int connected = 0, disconnected = 0;
+        for (int i = 0; i < origins.length; i++) {
+            for (int j = 0; j < destinations.length; j++) {
+                if (baseTimes[i][j] == Double.POSITIVE_INFINITY) continue;
+                if (times[i][j] == Double.POSITIVE_INFINITY) {
+                    disconnected++;
+                } else {
+                    extra += times[i][j] - baseTimes[i][j];
+                    connected++;
+                }
+            }
+        }
+
+        FacilityCoverage coverage = baseFacilityCoverage;
+        if (Arrays.stream(changed).anyMatch(baseFacilityCoverage::usesEdge)) {
+            coverage = baseFacilityCoverage.copy();
+            for (int edge : changed) {
+                coverage.setWeight(edge, closures.isClosed(edge) ? Double.POSITIVE_INFINITY : scenarioWeights[edge]);
+            }
+        }
+        double covered = coverage(coverage);
+        return new Outcome(scenario, meanTime(times), connected > 0 ? extra / connected : 0, disconnected,
+                covered, baseCoverage - covered, meanResponse(coverage));
+    }
+
+    // The unchanged times, with the rows (or columns, if the matrix searched backwards) whose search tree
+    // uses a changed edge searched again
+    private double[][] searchAffected(int[] changed, double[] scenarioWeights, EdgeMask closures) {
+        boolean backward = baseMatrix.isBackward();
+        int roots = backward ? destinations.length : origins.length;
+        int[] affected = IntStream.range(0, roots)
+                .filter(r -> Arrays.stream(changed).anyMatch(e -> baseMatrix.usesEdge(r, e)))
+                .toArray();
+        if (affected.length == 0) return baseTimes;
+
+        double[][] times = new double[origins.length][];
+        for (int i = 0; i < times.length; i++) times[i] = baseTimes[i].clone();
+        if (backward) {
+            int[] columns = Arrays.stream(affected).map(j -> destinations[j]).toArray();
+            double[][] fresh = TravelTimeMatrix.compute(graph, scenarioWeights, closures, origins, columns).getTimes();
+            for (int i = 0; i < origins.length; i++) {
+                for (int k = 0; k < affected.length; k++) times[i][affected[k]] = fresh[i][k];
+            }
+        } else {
+            int[] rows = Arrays.stream(affected).map(i -> origins[i]).toArray();
+            double[][] fresh = TravelTimeMatrix.compute(graph, scenarioWeights, closures, rows, destinations).getTimes();
+            for (int k = 0; k < affected.length; k++) times[affected[k]] = fresh[k];
+        }
+        return times;
+    }
+
+    /**
+     * Roads by their average impact over the scenarios they are closed or blocked in: most pairs cut off
+     * first, then most delay, then most coverage lost.
+     */
+    public static List<LinkImpact> rankLinks(List<Outcome> outcomes) {
+        Map<Integer, double[]> totals = new HashMap<>(); // scenarios, delay, disconnected, coverage loss
+        for (Outcome outcome : outcomes) {
+            for (int[] edges : List.of(outcome.scenario().closedEdges(), outcome.scenario().incidentEdges())) {
+                for (int edge : edges) {
+                    double[] total = totals.computeIfAbsent(edge, k -> new double[4]);
+                    total[0]++;
+                    total[1] += outcome.delay();
+                    total[2] += outcome.disconnectedPairs();
+                    total[3] += outcome.coverageLoss();
+                }
+            }
+        }
+        List<LinkImpact> ranking = new ArrayList<>();
+        totals.forEach((edge, t) -> ranking.add(new LinkImpact(edge, (int) t[0], t[1] / t[0], t[2] / t[0], t[3] / t[0])));
+        ranking.sort(Comparator.comparingDouble(LinkImpact::meanDisconnected)
+                .thenComparingDouble(LinkImpact::meanDelay)
+                .thenComparingDouble(LinkImpact::meanCoverageLoss)
+                .reversed());
+        return ranking;
+    }
+
+    public double getBaseMeanTime() { return baseMeanTime; }
+    public double getBaseCoverage() { return baseCoverage; }
+
+    private static double meanTime(double[][] times) {
+        double sum = 0;
+        int count = 0;
+        for (double[] row : times) {
+            for (double t : row) {
+                if (t == Double.POSITIVE_INFINITY) continue;
+                sum += t;
+                count++;
+            }
+        }
+        return count > 0 ? sum / count : 0;
+    }
+
+    // Share of nodes within COVERAGE_MINUTES of a facility
+    private double coverage(FacilityCoverage coverage) {
+        if (facilities.length == 0) return 0;
+        int covered = 0;
+        for (double t : coverage.getTimes()) {
+            if (t <= COVERAGE_MINUTES) covered++;
+        }
+        return (double) covered / graph.nodeCount();
+    }
+
+    private static double meanResponse(FacilityCoverage coverage) {
+        double sum = 0;
+        int count = 0;
+        for (double t : coverage.getTimes()) {
+            if (t == Double.POSITIVE_INFINITY) continue;
+            sum += t;
+            count++;
+        }
+        return count > 0 ? sum / count : Double.POSITIVE_INFINITY;
+    }
+}
@@ -0,0 +1,91 @@
+package org.example;
+
+import java.util.Arrays;
+
+/**
+ * Per-thread scratch arrays for shortest path searches, so a query does not allocate arrays of graph size.
+ * Entries are stamped with the epoch of the search that wrote them; get() starts a new epoch, which makes
+ * every older entry read as unreached without clearing anything.
+ * Each thread has one workspace per slot (FORWARD and BACKWARD for two-sided searches), and a slot
+ * must not be taken again on the same thread while a search is still using it.
+ */
+public class SearchWorkspace {
+    public static final int FORWARD = 0;
+    public static final int BACKWARD = 1;
+
+    private static final ThreadLocal<SearchWorkspace[]> LOCAL = ThreadLocal.withInitial(() -> new SearchWorkspace[2]);
+
+    private final int capacity;
+    private final double[] time;
+    private final double[] length;
+    private final int[] parent;
+    private final int[] stamp;
+    private final int[] mark;
+    private final IndexedHeap heap;
+    private int epoch;
+
+    private SearchWorkspace(int capacity) {
+        this.capacity = capacity;
+        this.time = new double[capacity];
+        this.length = new double[capacity];
+        this.parent = new int[capacity];
+        this.stamp = new int[capacity];
+        this.mark = new int[capacity];
+        this.heap = new IndexedHeap(capacity);
+    }
+
+    /** This thread's workspace for the slot, emptied and large enough for the graph. */
+    public static SearchWorkspace get(RoadGraph graph, int slot) {
+        SearchWorkspace[] local = LOCAL.get();
+        SearchWorkspace ws = local[slot];
+        if (ws == null || ws.capacity < graph.nodeCount()) {
+            ws = new SearchWorkspace(graph.nodeCount());
+            local[slot] = ws;
+        }
+        ws.reset();
+        return ws;
+    }
+
+    /** Starts a new search on the same workspace, e.g. the next spur search of a k shortest paths query. */
+    public void reset() {
+        heap.clear();
+        if (epoch == Integer.MAX_VALUE) {
+            Arrays.fill(stamp, 0);
+            Arrays.fill(mark, 0);
+            epoch = 0;
+        }
+        epoch++;
+    }
+
+    /** Queue over the node indices; emptied by reset(). */
+    public IndexedHeap heap() { return heap; }
+
+    public boolean reached(int node) { return stamp[node] == epoch; }
+
+    /** The node's label in this search, or infinity if the search has not reached it. */
+    public double time(int node) {
+        return stamp[node] == epoch ? time[node] : Double.POSITIVE_INFINITY;
+    }
+
+    /** Secondary label carried along with the time, e.g. the route length in km. */
+    public double length(int node) {
+        return stamp[node] == epoch ? length[node] : Double.POSITIVE_INFINITY;
+    }
+
+    /** Whatever the search stored as the node's parent (a node or an edge), or -1. */
+    public int parent(int node) {
+        return stamp[node] == epoch ? parent[node] : -1;
+    }
+
+    public void set(int node, double time, double length, int parent) {
+        this.stamp[node] = epoch;
+        this.time[node] = time;
+        this.length[node] = length;
+        this.parent[node] = parent;
+    }
+
+    /** One flag per node for the current search, e.g. settled or wanted. */
+    public void mark(int node) { mark[node] = epoch; }
+    public void unmark(int node) { mark[node] = 0; }
+    public boolean isMarked(int node) { return mark[node] == epoch; }
+}
@@ -0,0 +1,128 @@
+package org.example;
+
+import java.util.Arrays;
+
+/**
+ * Hierarchical timing wheel for discrete-event simulation on an integer clock (e.g. seconds).
+ * Four levels of 256 slots cover 2^32 ticks; an event goes into the lowest level whose slot range
+ * still separates it from the current time and is moved down a level each time the wheel below wraps.
+ * Scheduling and taking the next event are O(1) instead of the O(log n) of a priority queue, and events
+ * due at the same tick come out in the order they were scheduled.
+ * Events are plain ints kept in pooled arrays, so millions of pending events allocate no objects.
+ */
+public class TimingWheel {
+    private static final int BITS = 8;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+
+    // One singly linked list per slot, with a tail so events of the same tick stay in FIFO order
+    private final int[] head = new int[LEVELS * SLOTS];
+    private final int[] tail = new int[LEVELS * SLOTS];
+    private int[] values;
+    private int[] times;
+    private int[] next;
+    private int free = -1;
+    private int used;
+    private int size;
+    private int now;
+
+    public TimingWheel(int startTime) {
+        Arrays.fill(head, -1);
+        Arrays.fill(tail, -1);
+        values = new int[1024];
+        times = new int[1024];
+        next = new int[1024];
+        now = startTime;
+    }
+
+    /** The tick of the last event taken, or the start time. */
+    public int now() { return now; }
+
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+
+    /** Schedules the value at the given tick; ticks in the past are due immediately. */
+    public void schedule(int time, int value) {
+        if (time < now) time = now;
+        int entry = allocate();
+        values[entry] = value;
+        times[entry] = time;
+        insert(entry);
+        size++;
+    }
+
+    /**
+     * Takes the next due event, advancing the clock to its tick, or returns -1 once nothing is due
+     * before the limit (the clock then stops at the limit). Events scheduled for the current tick while
+     * it is being drained are still returned in this tick.
+     */
+    public int poll(int limit) {
+        while (size > 0) {
+            int slot = now & MASK;
+            int entry = head[slot];
+            if (entry >= 0) {
+                head[slot] = next[entry];
+                if (head[slot] < 0) tail[slot] = -1;
+                int value = values[entry];
+                release(entry);
+                size--;
+                return value;
+            }
+            if (now >= limit) return -1;
+            now++;
+            if ((now & MASK) == 0) cascade(1);
+        }
+        if (now < limit) now = limit;
+        return -1;
+    }
+
+    // Moves the events of the level's current slot down; wraps of this level cascade the level above first
+    private void cascade(int level) {
+        if (level >= LEVELS) return;
+        int shift = level * BITS;
+        int index = (now >>> shift) & MASK;
+        if (index == 0) cascade(level + 1);
+        int slot = level * SLOTS + index;
+        int entry = head[slot];
+        head[slot] = -1;
+        tail[slot] = -1;
+        while (entry >= 0) {
+            int following = next[entry];
+            insert(entry);
+            entry = following;
+        }
+    }
+
+    private void insert(int entry) {
+        int time = times[entry];
+        int level = 0;
+        // The lowest level where the event's tick and now only differ in that level's bits or below
+        while (level < LEVELS - 1 && (time >>> ((level + 1) * BITS)) != (now >>> ((level + 1) * BITS))) level++;
+        int slot = level * SLOTS + ((time >>> (level * BITS)) & MASK);
+        next[entry] = -1;
+        if (tail[slot] < 0) head[slot] = entry;
+        else next[tail[slot]] = entry;
+        tail[slot] = entry;
+    }
+
+    private int allocate() {
+        if (free >= 0) {
+            int entry = free;
+            free = next[entry];
+            return entry;
+        }
+        if (used == values.length) {
+            int capacity = values.length * 2;
+            values = Arrays.copyOf(values, capacity);
+            times = Arrays.copyOf(times, capacity);
+            next = Arrays.copyOf(next, capacity);
+        }
+        return used++;
+    }
+
+    private void release(int entry) {
+        next[entry] = free;
+        free = entry;
+    }
+}
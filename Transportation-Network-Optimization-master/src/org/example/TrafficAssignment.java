@@ -0,0 +1,259 @@
+package org.example;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Static user-equilibrium traffic assignment. Trips between zones (nodes with a population) come from a
+ * gravity model, link times follow the BPR function t0 * (1 + 0.15 (flow / capacity)^4), and the flows
+ * are found with the conjugate Frank-Wolfe method: all-or-nothing loads on the current shortest paths,
+ * combined with the previous direction and an exact line search, until the relative gap is small enough.
+ * All-or-nothing loading runs in parallel over blocks of origins, each block with its own flow array.
+ */
+public class TrafficAssignment {
+    public static final double BPR_ALPHA = 0.15;
+    public static final double BPR_BETA = 4.0;
+    private static final double FREE_FLOW_SPEED = 60.0;
+    private static final int LINE_SEARCH_STEPS = 30;
+    // Keeps the conjugate direction from collapsing onto the previous one
+    private static final double MAX_CONJUGATE_WEIGHT = 0.99;
+
+    /** Equilibrium link flows and times, the free-flow all-or-nothing flows for comparison, and convergence info. */
+    public record Result(double[] flows, double[] times, double[] allOrNothing, int iterations, double gap) {}
+
+    private final RoadGraph graph;
+    private final double[] freeFlowTimes;
+    private final EdgeMask closedEdges;
+    private final int[] zones;
+    private final double[][] demand;
+
+    /** demand[i][j] is the number of trips from zones[i] to zones[j]. Closed edges carry no flow. */
+    public TrafficAssignment(RoadGraph graph, double[] freeFlowTimes, EdgeMask closedEdges, int[] zones, double[][] demand) {
+        this.graph = graph;
+        this.freeFlowTimes = freeFlowTimes;
+        this.closedEdges = closedEdges;
+        this.zones = zones;
+        this.demand = demand;
+    }
+
+    /**
+     * Assignment for one period: every populated node is a zone, trips follow a gravity model on free-flow
+     * times, and the total is scaled so that the free-flow all-or-nothing loading puts as much volume on
+     * the links as the TrafficFlow table has for the period.
+     */
+    public static TrafficAssignment forPeriod(TrafficFlowStore trafficFlow, Map<String, Node> nodes, Period period,
+                                              EdgeMask closedEdges) {
+        RoadGraph graph = trafficFlow.getGraph();
+        double[] freeFlow = freeFlowTimes(graph);
+        List<Integer> zoneList = new ArrayList<>();
+        List<Double> population = new ArrayList<>();
+        for (Node node : nodes.values()) {
+            int index = graph.indexOf(node.getId());
+            if (index >= 0 && node.getPopulation() != null && node.getPopulation() > 0) {
+                zoneList.add(index);
+                population.add(node.getPopulation().doubleValue());
+            }
+        }
+        int[] zones = zoneList.stream().mapToInt(Integer::intValue).toArray();
+        double[] pop = population.stream().mapToDouble(Double::doubleValue).toArray();
+        TravelTimeMatrix costs = TravelTimeMatrix.compute(graph, freeFlow, closedEdges, zones, zones);
+        double[][] demand = gravityDemand(pop, costs.getTimes(), 1.0);
+
+        TrafficAssignment unit = new TrafficAssignment(graph, freeFlow, closedEdges, zones, demand);
+        double unitVolume = 0;
+        for (double flow : unit.allOrNothing(freeFlow)) unitVolume += flow;
+        double measured = 0;
+        for (int e = 0; e < graph.edgeCount(); e++) measured += trafficFlow.flow(e, period);
+        double scale = unitVolume > 0 ? measured / unitVolume : 0;
+        for (double[] row : demand) {
+            for (int j = 0; j < row.length; j++) row[j] *= scale;
+        }
+        return new TrafficAssignment(graph, freeFlow, closedEdges, zones, demand);
+    }
+
+    /** Minutes to drive each edge at free-flow speed. */
+    public static double[] freeFlowTimes(RoadGraph graph) {
+        double[] times = new double[graph.edgeCount()];
+        for (int e = 0; e < times.length; e++) {
+            times[e] = graph.length(e) / FREE_FLOW_SPEED * 60;
+        }
+        return times;
+    }
+
+    /**
+     * Trips proportional to P_i * P_j / c_ij^2, scaled to the given total. Unreachable pairs get none,
+     * and costs below one minute count as one so neighbouring zones do not swallow all the trips.
+     */
+    public static double[][] gravityDemand(double[] population, double[][] costs, double totalTrips) {
+        int z = population.length;
+        double[][] demand = new double[z][z];
+        double sum = 0;
+        for (int i = 0; i < z; i++) {
+            for (int j = 0; j < z; j++) {
+                if (i == j || costs[i][j] == Double.POSITIVE_INFINITY) continue;
+                double c = Math.max(costs[i][j], 1.0);
+                demand[i][j] = population[i] * population[j] / (c * c);
+                sum += demand[i][j];
+            }
+        }
+        if (sum > 0) {
+            for (double[] row : demand) {
+                for (int j = 0; j < z; j++) row[j] *= totalTrips / sum;
+            }
+        }
+        return demand;
+    }
+
+    /** BPR travel time of the edge at the given flow; edges without a capacity keep their free-flow time. */
+    public double linkTime(int edge, double flow) {
+        int capacity = graph.capacity(edge);
+        if (capacity <= 0) return freeFlowTimes[edge];
+        return freeFlowTimes[edge] * (1 + BPR_ALPHA * power(flow / capacity, BPR_BETA));
+    }
+
+    private double linkTimeDerivative(int edge, double flow) {
+        int capacity = graph.capacity(edge);
+        if (capacity <= 0 || flow <= 0) return 0;
+        return freeFlowTimes[edge] * BPR_ALPHA * BPR_BETA * power(flow / capacity, BPR_BETA - 1) / capacity;
+    }
+
+    // The line search evaluates link times millions of times; the usual integer exponents skip Math.pow
+    private static double power(double base, double exponent) {
+        if (exponent == 4.0) {
+            double square = base * base;
+            return square * square;
+        }
+        if (exponent == 3.0) return base * base * base;
+        return Math.pow(base, exponent);
+    }
+
+    public Result solve(int maxIterations, double targetGap) {
+        int m = graph.edgeCount();
+        double[] x = allOrNothing(freeFlowTimes);
+        double[] initial = x.clone();
+        double[] times = new double[m];
+        double[] previous = null;
+        double gap = Double.POSITIVE_INFINITY;
+        int iteration = 0;
+
+        while (iteration < maxIterations) {
+            for (int e = 0; e < m; e++) times[e] = linkTime(e, x[e]);
+            double[] y = allOrNothing(times);
+            iteration++;
+
+            double current = 0, shortest = 0;
+            for (int e = 0; e < m; e++) {
+                current += x[e] * times[e];
+                shortest += y[e] * times[e];
+            }
+            gap = current > 0 ? (current - shortest) / current : 0;
+            if (gap < targetGap) break;
+
+            // Conjugate direction: mix the new all-or-nothing load with the previous target so the two
+            // directions are conjugate with respect to the (diagonal) Hessian of the objective
+            double[] target = y;
+            if (previous != null) {
+                double num = 0, den = 0;
+                for (int e = 0; e < m; e++) {
+                    double h = linkTimeDerivative(e, x[e]);
+                    num += (previous[e] - x[e]) * h * (y[e] - x[e]);
+                    den += (previous[e] - x[e]) * h * (y[e] - previous[e]);
+                }
+                double alpha = den != 0 ? num / den : 0;
+                alpha = Math.max(0, Math.min(alpha, MAX_CONJUGATE_WEIGHT));
+                if (alpha > 0) {
+                    target = new double[m];
+                    for (int e = 0; e < m; e++) target[e] = alpha * previous[e] + (1 - alpha) * y[e];
+                }
+            }
+
+            double lambda = lineSearch(x, target);
+            for (int e = 0; e < m; e++) x[e] += lambda * (target[e] - x[e]);
+            previous = target;
+        }
+
+        for (int e = 0; e < m; e++) times[e] = linkTime(e, x[e]);
+        return new Result(x, times, initial, iteration, gap);
+    }
+
+    // Step along x -> target that minimises the Beckmann objective: bisection on its derivative
+    private double lineSearch(double[] x, double[] target) {
+        double low = 0, high = 1;
+        for (int step = 0; step < LINE_SEARCH_STEPS; step++) {
+            double mid = (low + high) / 2;
+            double slope = 0;
+            for (int e = 0; e < x.length; e++) {
+                double d = target[e] - x[e];
+                if (d != 0) slope += d * linkTime(e, x[e] + mid * d);
+            }
+            if (slope > 0) high = mid;
+            else low = mid;
+        }
+        return (low + high) / 2;
+    }
+
+    /** Link flows when every trip takes its shortest path under the given edge times. */
+    double[] allOrNothing(double[] times) {
+        int blocks = Math.min(zones.length, ForkJoinPool.getCommonPoolParallelism() * 4);
+        if (blocks == 0) return new double[graph.edgeCount()];
+        return IntStream.range(0, blocks).parallel()
+                .mapToObj(b -> loadBlock(b, blocks, times))
+                .reduce((a, b) -> {
+                    for (int e = 0; e < a.length; e++) a[e] += b[e];
+                    return a;
+                })
+                .orElseThrow();
+    }
+
+    private double[] loadBlock(int block, int blocks, double[] times) {
+        int n = graph.nodeCount();
+        double[] flows = new double[graph.edgeCount()];
+        double[] load = new double[n];
+        int[] order = new int[n];
+        for (int i = block; i < zones.length; i += blocks) {
+            SearchWorkspace ws = SearchWorkspace.get(graph, SearchWorkspace.FORWARD);
+            int remaining = 0;
+            for (int j = 0; j < zones.length; j++) {
+                if (demand[i][j] > 0 && !ws.isMarked(zones[j])) {
+                    ws.mark(zones[j]);
+                    remaining++;
+                }
+                load[zones[j]] += demand[i][j];
+            }
+
+            IndexedHeap heap = ws.heap();
+            ws.set(zones[i], 0.0, 0.0, -1);
+            heap.insert(zones[i], 0.0);
+            int settled = 0;
+            while (!heap.isEmpty() && remaining > 0) {
+                int u = heap.poll();
+                order[settled++] = u;
+                if (ws.isMarked(u)) remaining--;
+                for (int e = graph.firstEdge(u); e < graph.lastEdge(u); e++) {
+                    if (closedEdges.isClosed(e)) continue;
+                    int v = graph.target(e);
+                    double t = ws.time(u) + times[e];
+                    if (t < ws.time(v)) {
+                        ws.set(v, t, 0.0, e);
+                        heap.insertOrDecrease(v, t);
+                    }
+                }
+            }
+
+            // Push each node's trips back up the tree, farthest nodes first
+            for (int k = settled - 1; k > 0; k--) {
+                int v = order[k];
+                if (load[v] == 0) continue;
+                int e = ws.parent(v);
+                flows[e] += load[v];
+                load[graph.target(graph.reverse(e))] += load[v];
+                load[v] = 0;
+            }
+            // Trips to zones the search never settled are dropped, and the root keeps what was pushed to it
+            for (int j = 0; j < zones.length; j++) load[zones[j]] = 0;
+            load[zones[i]] = 0;
+        }
+        return flows;
+    }
+}
@@ -0,0 +1,87 @@
+package org.example;
+
+/**
+ * TrafficFlow volumes laid out per edge of a RoadGraph, one int slot per period.
+ * A row stored as "from-to" covers both directions of the road unless the table also has a "to-from" row,
+ * so lookups are plain array reads instead of string keys and boxed maps.
+ */
+public class TrafficFlowStore {
+    private static final int PERIODS = Period.values().length;
+    private static final byte NONE = 0;
+    private static final byte REVERSE_ROW = 1;
+    private static final byte OWN_ROW = 2;
+
+    private final RoadGraph graph;
+    private final int[] volumes;
+    private final byte[] source;
+    private final double[] totals = new double[PERIODS];
+    private int rows;
+    private WeightProfiles weights;
+
+    /** Creates an empty store for the graph; DataLoader fills it one TrafficFlow row at a time. */
+    public TrafficFlowStore(RoadGraph graph) {
+        this.graph = graph;
+        this.volumes = new int[graph.edgeCount() * PERIODS];
+        this.source = new byte[graph.edgeCount()];
+    }
+
+    /** Adds one TrafficFlow row. Rows for roads that are not in the graph only count towards the averages. */
+    public void add(String fromId, String toId, int morningPeak, int afternoon, int eveningPeak, int night) {
+        int[] row = {morningPeak, afternoon, eveningPeak, night};
+        for (int p = 0; p < PERIODS; p++) {
+            totals[p] += row[p];
+        }
+        rows++;
+        if (weights != null) weights.invalidate();
+
+        int from = graph.indexOf(fromId);
+        int to = graph.indexOf(toId);
+        if (from < 0 || to < 0) return;
+        for (int e = graph.firstEdge(from); e < graph.lastEdge(from); e++) {
+            if (graph.target(e) != to) continue;
+            set(e, row, OWN_ROW);
+            int back = graph.reverse(e);
+            if (source[back] != OWN_ROW) set(back, row, REVERSE_ROW);
+        }
+    }
+
+    private void set(int edge, int[] row, byte from) {
+        System.arraycopy(row, 0, volumes, edge * PERIODS, PERIODS);
+        source[edge] = from;
+    }
+
+    public RoadGraph getGraph() { return graph; }
+
+    /** The travel time and congestion arrays for this data, shared by everyone holding the store. */
+    public synchronized WeightProfiles getWeights() {
+        if (weights == null) weights = new WeightProfiles(this);
+        return weights;
+    }
+
+    public boolean isEmpty() { return rows == 0; }
+
+    /** The edge from -> to in the store's graph, or -1 if there is none. */
+    public int edge(String fromId, String toId) {
+        return graph.findEdge(fromId, toId);
+    }
+
+    /** True if the TrafficFlow table has a row for the road behind this edge. */
+    public boolean hasFlow(int edge) {
+        return edge >= 0 && source[edge] != NONE;
+    }
+
+    /** Measured volume on the edge, or 0 if the road has no row. */
+    public int flow(int edge, Period period) {
+        return hasFlow(edge) ? volumes[edge * PERIODS + period.ordinal()] : 0;
+    }
+
+    /** Measured volume on the edge, or the network average for the period if the road has no row. */
+    public double volume(int edge, Period period) {
+        return hasFlow(edge) ? volumes[edge * PERIODS + period.ordinal()] : average(period);
+    }
+
+    /** Mean volume over all TrafficFlow rows, as SELECT AVG(...) would give it, or 100 for an empty table. */
+    public double average(Period period) {
+        return rows > 0 ? totals[period.ordinal()] / rows : 100;
+    }
+}
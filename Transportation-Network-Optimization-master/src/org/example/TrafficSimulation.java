@@ -17,10 +17,16 @@ import javax.imageio.ImageIO;
 import java.awt.image.RescaleOp;
 
 public class TrafficSimulation extends JFrame {
+    private static final int ASSIGNMENT_ITERATIONS = 200;
+    private static final double ASSIGNMENT_GAP = 1e-4;
+    // Origins and destinations sampled for scenario travel times, and random multi-road scenarios per run
+    private static final int CRITICAL_ROAD_SAMPLE = 40;
+    private static final int RANDOM_SCENARIOS = 1000;
+
     private Connection conn;
     private Map<String, Node> nodes;
     private List<Road> roads;
-    private Map<String, Map<String, Integer>> trafficFlow;
+    private TrafficFlowStore trafficFlow;
     private JComboBox<String> lineCombo, timeCombo, transitTypeCombo, startCombo, endCombo;
     private JTextArea resultTextArea;
     private JTable routeTable;
@@ -32,6 +38,17 @@ public class TrafficSimulation extends JFrame {
     private List<String> highlightedPath;
     private JCheckBox highlightRouteCheckBox;
     private List<Road> closedRoads;
+    private EdgeMask closedEdges;
+    private RoadGraph graph;
+    private Map<Period, ContractionHierarchy> hierarchies = new EnumMap<>(Period.class);
+    // Periods whose hierarchy is being built in the background
+    private Set<Period> buildingHierarchies = EnumSet.noneOf(Period.class);
+    private TravelTimeProfile travelTimeProfile;
+    private Map<Period, TrafficAssignment.Result> assignments = new EnumMap<>(Period.class);
+    // Periods whose assignment is being solved in the background
+    private Set<Period> solvingAssignments = EnumSet.noneOf(Period.class);
+    // Counts road closures, so a background result computed before a closure is thrown away
+    private int closureVersion;
 
     public TrafficSimulation(Connection conn) {
         this.conn = conn;
@@ -39,7 +56,9 @@ public class TrafficSimulation extends JFrame {
         try {
             nodes = DataLoader.loadNodes(conn);
             roads = DataLoader.loadRoads(conn);
-            trafficFlow = DataLoader.loadTrafficFlow(conn);
+            graph = RoadGraph.build(nodes, roads, true); // Skip non-existing roads
+            trafficFlow = DataLoader.loadTrafficFlow(conn, graph);
+            closedEdges = new EdgeMask(graph);
             transitLines = loadTransitLines(conn);
             initUI();
         } catch (Exception e) {
@@ -193,6 +212,8 @@ public class TrafficSimulation extends JFrame {
         timeCombo.setPreferredSize(new Dimension(200, 30));
         timeCombo.setBackground(new Color(255, 255, 255));
         timeCombo.setForeground(new Color(74, 74, 74));
+        timeCombo.addActionListener(e -> prepareHierarchy(Period.fromLabel((String) timeCombo.getSelectedItem())));
+        prepareHierarchy(Period.fromLabel((String) timeCombo.getSelectedItem()));
         controlPanel.add(timeCombo, gbc);
 
         gbc.gridx = 0;
@@ -235,6 +256,22 @@ public class TrafficSimulation extends JFrame {
         controlPanel.add(findPathButton, gbc);
 
         gbc.gridy = 9;
+        JButton simulateButton = new JButton("Simulate Full Day");
+        simulateButton.setBackground(new Color(47, 79, 79)); // Dark green
+        simulateButton.setForeground(new Color(255, 255, 255));
+        simulateButton.setPreferredSize(new Dimension(200, 35));
+        simulateButton.addActionListener(e -> simulateDay(simulateButton));
+        controlPanel.add(simulateButton, gbc);
+
+        gbc.gridy = 10;
+        JButton scenariosButton = new JButton("Rank Critical Roads");
+        scenariosButton.setBackground(new Color(47, 79, 79)); // Dark green
+        scenariosButton.setForeground(new Color(255, 255, 255));
+        scenariosButton.setPreferredSize(new Dimension(200, 35));
+        scenariosButton.addActionListener(e -> rankCriticalRoads(scenariosButton));
+        controlPanel.add(scenariosButton, gbc);
+
+        gbc.gridy = 11;
         JButton closeRoadButton = new JButton("Close a Road (Test)");
         closeRoadButton.setBackground(new Color(139, 69, 19)); // Dark brown
         closeRoadButton.setForeground(new Color(255, 255, 255));
@@ -422,13 +459,11 @@ public class TrafficSimulation extends JFrame {
             Road road = getRoad(from, to);
             if (road == null) continue;
 
-            String key = from + "-" + to;
-            if (!trafficFlow.containsKey(key)) key = to + "-" + from;
-            Map<String, Integer> traffic = trafficFlow.get(key);
-            if (traffic == null) continue;
+            int edge = trafficFlow.edge(from, to);
+            if (!trafficFlow.hasFlow(edge)) continue;
 
-            double congestion = calculateCongestion(road.getCapacity(), timeOfDay, traffic);
-            double travelTime = calculateTravelTime(road.getDistance(), road.getCapacity(), timeOfDay, traffic);
+            double congestion = calculateCongestion(timeOfDay, edge);
+            double travelTime = calculateTravelTime(road.getDistance(), timeOfDay, edge);
 
             totalDistance += road.getDistance();
             totalTime += travelTime;
@@ -463,82 +498,55 @@ public class TrafficSimulation extends JFrame {
 
         double totalCongestionBefore = 0;
         double totalCongestionAfter = 0;
-        Map<String, Double> newTraffic = new HashMap<>();
+        Map<Road, Double> newTraffic = new HashMap<>();
         List<List<String>> alternativePaths = new ArrayList<>(); // Store alternative paths
         StringBuilder message = new StringBuilder("Optimized " + selectedLine + ":\n");
-        Map<String, List<Dijkstra.Edge>> graph = buildGraph();
         int reroutedSegments = 0;
 
+        // Before: the measured volumes. After: user equilibrium of the modelled demand, where the moved
+        // traffic slows down the roads it moves to and nobody can save time by switching route
+        TrafficAssignment.Result assignment = assignments.get(Period.fromLabel(timeOfDay));
+        if (assignment == null) {
+            solveAssignment(Period.fromLabel(timeOfDay));
+            return;
+        }
+
         for (int i = 0; i < lineStops.size() - 1; i++) {
             String from = lineStops.get(i);
             String to = lineStops.get(i + 1);
             Road road = getRoad(from, to);
             if (road == null) continue;
 
-            String key = from + "-" + to;
-            if (!trafficFlow.containsKey(key)) key = to + "-" + from;
-            Map<String, Integer> traffic = trafficFlow.get(key);
-            if (traffic == null) continue;
+            int edge = trafficFlow.edge(from, to);
+            if (!trafficFlow.hasFlow(edge)) continue;
+            if (road.getCapacity() <= 0) continue; // No capacity on record, so no congestion to compare
 
-            double congestion = calculateCongestion(road.getCapacity(), timeOfDay, traffic);
+            double before = getTrafficForTime(edge, timeOfDay);
+            double after = assignment.flows()[edge];
+            double congestion = Math.min(before / road.getCapacity(), 1);
+            double congestionAfter = Math.min(after / road.getCapacity(), 1);
             totalCongestionBefore += congestion;
-
-            if (congestion > 0.8) { // Check for high congestion
-                // Temporarily close the congested road
-                List<Road> tempClosedRoads = new ArrayList<>(closedRoads);
-                tempClosedRoads.add(road);
-
-                // Find alternative path
-                Dijkstra.PathResult altPath = Dijkstra.findShortestPath(graph, from, to, timeOfDay, trafficFlow, tempClosedRoads);
-                if (!altPath.path.isEmpty() && altPath.time != Double.POSITIVE_INFINITY) {
-                    // Reroute 30% of traffic
-                    double currentTraffic = getTrafficForTime(traffic, timeOfDay);
-                    double reroutedTraffic = currentTraffic * 0.3;
-                    double remainingTraffic = currentTraffic * 0.7;
-                    newTraffic.put(key, remainingTraffic);
-
-                    // Distribute rerouted traffic to alternative path
-                    for (int j = 0; j < altPath.path.size() - 1; j++) {
-                        String altFrom = altPath.path.get(j);
-                        String altTo = altPath.path.get(j + 1);
-                        String altKey = altFrom + "-" + altTo;
-                        if (!trafficFlow.containsKey(altKey)) altKey = altTo + "-" + altFrom;
-                        Map<String, Integer> altTraffic = trafficFlow.get(altKey);
-                        if (altTraffic != null) {
-                            double altCurrentTraffic = getTrafficForTime(altTraffic, timeOfDay);
-                            newTraffic.put(altKey, altCurrentTraffic + reroutedTraffic);
-                        }
+            totalCongestionAfter += congestionAfter;
+            newTraffic.put(graph.road(edge), after);
+
+            if (congestion > 0.8 && after < before) { // Traffic leaves a congested segment at equilibrium
+                // The best route around the segment under equilibrium travel times
+                Dijkstra.PathResult altPath = null;
+                for (Dijkstra.PathResult candidate : KShortestPaths.find(graph, from, to, 2, assignment.times(), closedEdges)) {
+                    if (candidate.path.size() > 2) {
+                        altPath = candidate;
+                        break;
                     }
-
-                    // Store alternative path
-                    alternativePaths.add(altPath.path);
-
-                    // Add to message
-                    String pathStr = String.join(" -> ", altPath.path.stream().map(this::getNodeNameById).toList());
-                    message.append(String.format("- Rerouted 30%% of traffic from %s -> %s (%.0f%% congestion) to alternative path: %s\n",
-                            getNodeNameById(from), getNodeNameById(to), congestion * 100, pathStr));
-                    reroutedSegments++;
-                } else {
-                    newTraffic.put(key, getTrafficForTime(traffic, timeOfDay));
                 }
-            } else {
-                newTraffic.put(key, getTrafficForTime(traffic, timeOfDay));
-            }
-        }
-
-        // Calculate congestion after rerouting
-        for (int i = 0; i < lineStops.size() - 1; i++) {
-            String from = lineStops.get(i);
-            String to = lineStops.get(i + 1);
-            Road road = getRoad(from, to);
-            if (road == null) continue;
 
-            String key = from + "-" + to;
-            if (!trafficFlow.containsKey(key)) key = to + "-" + from;
-            double trafficVolume = newTraffic.getOrDefault(key, getTrafficForTime(trafficFlow.get(key), timeOfDay));
-            double congestion = trafficVolume / road.getCapacity();
-            if (congestion > 1) congestion = 1;
-            totalCongestionAfter += congestion;
+                String pathStr = altPath == null ? "other routes"
+                        : String.join(" -> ", altPath.path.stream().map(this::getNodeNameById).toList());
+                if (altPath != null) alternativePaths.add(altPath.path);
+                message.append(String.format("- %.0f%% of traffic moves off %s -> %s (%.0f%% congestion), e.g. via: %s\n",
+                        (before - after) / before * 100, getNodeNameById(from), getNodeNameById(to),
+                        congestion * 100, pathStr));
+                reroutedSegments++;
+            }
         }
 
         // Calculate congestion reduction
@@ -548,10 +556,12 @@ public class TrafficSimulation extends JFrame {
 
         // Finalize message
         if (reroutedSegments == 0) {
-            message.append("No roads required rerouting (all congestion levels below 80%).");
+            message.append("No congested segment (above 80%) loses traffic at equilibrium.");
         } else {
             message.append(String.format("- Total congestion reduced by %.0f%%.", reduction));
         }
+        message.append(String.format("\n(Before: measured volumes. After: modelled equilibrium after %d iterations, gap %.2g%%)",
+                assignment.iterations(), assignment.gap() * 100));
 
         // Update UI
         resultTextArea.setText(message.toString());
@@ -582,6 +592,39 @@ public class TrafficSimulation extends JFrame {
         mapPanel.repaint();
     }
 
+    // Solves the equilibrium flows for the period in the background and runs the optimization again once they
+    // are in; the result is kept until a road is closed
+    private void solveAssignment(Period period) {
+        resultTextArea.setText("Solving traffic equilibrium for " + period.label() + "...");
+        if (!solvingAssignments.add(period)) return;
+        EdgeMask closures = closedEdges.copy();
+        int version = closureVersion;
+        SwingWorker<TrafficAssignment.Result, Void> worker = new SwingWorker<>() {
+            @Override
+            protected TrafficAssignment.Result doInBackground() {
+                return TrafficAssignment.forPeriod(trafficFlow, nodes, period, closures)
+                        .solve(ASSIGNMENT_ITERATIONS, ASSIGNMENT_GAP);
+            }
+
+            @Override
+            protected void done() {
+                solvingAssignments.remove(period);
+                try {
+                    TrafficAssignment.Result result = get();
+                    if (version != closureVersion) {
+                        solveAssignment(period); // A road was closed meanwhile
+                        return;
+                    }
+                    assignments.put(period, result);
+                    optimizeTransitLine();
+                } catch (Exception ex) {
+                    resultTextArea.setText("Traffic equilibrium failed: " + ex.getMessage());
+                }
+            }
+        };
+        worker.execute();
+    }
+
     private void findOptimalPath() {
         String startName = (String) startCombo.getSelectedItem();
         String endName = (String) endCombo.getSelectedItem();
@@ -609,8 +652,12 @@ public class TrafficSimulation extends JFrame {
         }
 
         // Calculate the optimal path using Dijkstra
-        Map<String, List<Dijkstra.Edge>> graph = buildGraph();
-        Dijkstra.PathResult optimalPath = Dijkstra.findShortestPath(graph, start, end, timeOfDay, trafficFlow, closedRoads);
+        // The hierarchies know nothing about closures, so fall back to plain search once a road is closed,
+        // and while the hierarchy for the period is still being built
+        ContractionHierarchy hierarchy = hierarchies.get(Period.fromLabel(timeOfDay));
+        Dijkstra.PathResult optimalPath = closedEdges.isEmpty() && hierarchy != null
+                ? hierarchy.findShortestPath(start, end)
+                : Dijkstra.findShortestPathBidirectional(graph, start, end, timeOfDay, trafficFlow, closedEdges);
 
         if (optimalPath.path.isEmpty() || optimalPath.time == Double.POSITIVE_INFINITY) {
             resultTextArea.setText("No path found between " + startName + " and " + endName + ".");
@@ -619,6 +666,17 @@ public class TrafficSimulation extends JFrame {
 
         // Display the optimal path
         comparisonResult.append("\nOptimal Path: ").append(String.format("%.1f km, %.1f min", optimalPath.distance, optimalPath.time));
+
+        // The same trip with each road costed at the clock time it is reached, leaving as the period starts
+        if (travelTimeProfile == null) {
+            travelTimeProfile = TravelTimeProfile.fromPeriods(trafficFlow, WeightProfiles.VehicleProfile.CAR);
+        }
+        int departure = Period.fromLabel(timeOfDay).startMinute();
+        Dijkstra.PathResult timedPath = Dijkstra.findShortestPathAt(graph, start, end, departure, travelTimeProfile, closedEdges);
+        if (timedPath.time != Double.POSITIVE_INFINITY) {
+            comparisonResult.append(String.format("\nLeaving at %02d:%02d (time-dependent): %.1f km, %.1f min",
+                    departure / 60, departure % 60, timedPath.distance, timedPath.time));
+        }
         resultTextArea.setText(comparisonResult.toString());
         highlightedPath = optimalPath.path;
         currentLineStops = null; // Clear transit line highlighting
@@ -629,6 +687,28 @@ public class TrafficSimulation extends JFrame {
         mapPanel.repaint();
     }
 
+    // Contracts the graph for the period in the background; path queries use it once it is in
+    private void prepareHierarchy(Period period) {
+        if (hierarchies.containsKey(period) || !buildingHierarchies.add(period)) return;
+        SwingWorker<ContractionHierarchy, Void> worker = new SwingWorker<>() {
+            @Override
+            protected ContractionHierarchy doInBackground() {
+                return ContractionHierarchy.forPeriod(graph, period, trafficFlow);
+            }
+
+            @Override
+            protected void done() {
+                buildingHierarchies.remove(period);
+                try {
+                    hierarchies.put(period, get());
+                } catch (Exception ex) {
+                    ex.printStackTrace(); // Queries keep using bidirectional search
+                }
+            }
+        };
+        worker.execute();
+    }
+
     private List<String> findTransitLinesBetweenPoints(String start, String end) {
         List<String> matchingLines = new ArrayList<>();
         for (Map.Entry<String, List<String>> entry : transitLines.entrySet()) {
@@ -645,6 +725,101 @@ public class TrafficSimulation extends JFrame {
         return matchingLines;
     }
 
+    // Runs the queue simulation of a whole day in the background and reports the roads with the most delay
+    private void simulateDay(JButton simulateButton) {
+        EdgeMask closures = closedEdges.copy();
+        simulateButton.setEnabled(false);
+        resultTextArea.setText("Simulating 24 hours of traffic...");
+        SwingWorker<String, Void> worker = new SwingWorker<>() {
+            @Override
+            protected String doInBackground() {
+                long started = System.currentTimeMillis();
+                MesoscopicSimulation.Result result = new MesoscopicSimulation(trafficFlow, closures, 42).simulateDay();
+                long elapsed = System.currentTimeMillis() - started;
+
+                StringBuilder message = new StringBuilder(String.format(
+                        "Simulated day: %,d trips started, %,d completed, %.1f min average trip, %,.0f vehicle-hours.\n",
+                        result.tripsStarted(), result.tripsCompleted(), result.meanTripMinutes(), result.vehicleHours()));
+                message.append(String.format("(%,d events in %.1f s, up to %,d vehicles on the road at once)\n",
+                        result.events(), elapsed / 1000.0,
+                        (long) result.maxPacketsInNetwork() * MesoscopicSimulation.PACKET_SIZE));
+                if (result.gridlockReleases() > 0) {
+                    message.append(String.format("%,d vehicles were taken off gridlocked roads after waiting 5 min for room ahead.\n",
+                            result.gridlockReleases()));
+                }
+
+                Integer[] edges = new Integer[graph.edgeCount()];
+                for (int e = 0; e < edges.length; e++) edges[e] = e;
+                Arrays.sort(edges, (a, b) -> Double.compare(result.meanDelays()[b], result.meanDelays()[a]));
+                message.append("Most delayed roads:\n");
+                for (int i = 0; i < Math.min(5, edges.length) && result.meanDelays()[edges[i]] > 0; i++) {
+                    int edge = edges[i];
+                    message.append(String.format("- %s -> %s: %.1f min average delay\n",
+                            getNodeNameById(graph.nodeId(graph.target(graph.reverse(edge)))),
+                            getNodeNameById(graph.nodeId(graph.target(edge))), result.meanDelays()[edge]));
+                }
+                return message.toString();
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    resultTextArea.setText(get());
+                } catch (Exception ex) {
+                    resultTextArea.setText("Simulation failed: " + ex.getMessage());
+                }
+                simulateButton.setEnabled(true);
+            }
+        };
+        worker.execute();
+    }
+
+    // Closes every road on its own, plus random sets of closures and incidents, and lists the roads whose
+    // loss hurts travel times and hospital coverage the most
+    private void rankCriticalRoads(JButton scenariosButton) {
+        String timeOfDay = (String) timeCombo.getSelectedItem();
+        // Roads closed while the scenarios run must not change the mask under the worker
+        EdgeMask closures = closedEdges.copy();
+        scenariosButton.setEnabled(false);
+        resultTextArea.setText("Evaluating closure scenarios...");
+        SwingWorker<String, Void> worker = new SwingWorker<>() {
+            @Override
+            protected String doInBackground() {
+                ScenarioRunner runner = ScenarioRunner.forPeriod(trafficFlow, nodes, Period.fromLabel(timeOfDay),
+                        closures, CRITICAL_ROAD_SAMPLE, 42);
+                List<ScenarioRunner.Scenario> scenarios = new ArrayList<>(runner.singleClosures());
+                scenarios.addAll(runner.randomScenarios(RANDOM_SCENARIOS, 3, 2, 42));
+                List<ScenarioRunner.Outcome> outcomes = runner.run(scenarios);
+
+                StringBuilder message = new StringBuilder(String.format(
+                        "%d scenarios (%s): average trip %.1f min, %.0f%% of nodes within %.0f min of a hospital.\n",
+                        outcomes.size(), timeOfDay, runner.getBaseMeanTime(), runner.getBaseCoverage() * 100,
+                        ScenarioRunner.COVERAGE_MINUTES));
+                message.append("Most critical roads:\n");
+                List<ScenarioRunner.LinkImpact> ranking = ScenarioRunner.rankLinks(outcomes);
+                for (ScenarioRunner.LinkImpact link : ranking.subList(0, Math.min(10, ranking.size()))) {
+                    int edge = link.edge();
+                    message.append(String.format("- %s <-> %s: +%.1f min, %.1f trips cut off, -%.1f%% coverage (%d scenarios)\n",
+                            getNodeNameById(graph.nodeId(graph.target(graph.reverse(edge)))),
+                            getNodeNameById(graph.nodeId(graph.target(edge))),
+                            link.meanDelay(), link.meanDisconnected(), link.meanCoverageLoss() * 100, link.scenarios()));
+                }
+                return message.toString();
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    resultTextArea.setText(get());
+                } catch (Exception ex) {
+                    resultTextArea.setText("Scenario run failed: " + ex.getMessage());
+                }
+                scenariosButton.setEnabled(true);
+            }
+        };
+        worker.execute();
+    }
+
     private void closeRoadForTest() {
         Road roadToClose = roads.stream()
                 .filter(r -> (r.fromId.equals("1") && r.toId.equals("3")) || (r.fromId.equals("3") && r.toId.equals("1")))
@@ -653,6 +828,9 @@ public class TrafficSimulation extends JFrame {
 
         if (roadToClose != null && !closedRoads.contains(roadToClose)) {
             closedRoads.add(roadToClose);
+            closedEdges.closeRoad(roadToClose);
+            closureVersion++;
+            assignments.clear();
             resultTextArea.setText("Road between Maadi and Downtown Cairo closed.");
             mapPanel.repaint();
         } else {
@@ -660,19 +838,6 @@ public class TrafficSimulation extends JFrame {
         }
     }
 
-    private Map<String, List<Dijkstra.Edge>> buildGraph() {
-        Map<String, List<Dijkstra.Edge>> graph = new HashMap<>();
-        for (Road road : roads) {
-            if (!road.isExisting()) continue; // Skip non-existing roads
-            Dijkstra.Edge edge = new Dijkstra.Edge(road.getToId(), road.getDistance(), road.getCapacity());
-            graph.computeIfAbsent(road.getFromId(), k -> new ArrayList<>()).add(edge);
-            // Since roads are bidirectional, add the reverse edge
-            Dijkstra.Edge reverseEdge = new Dijkstra.Edge(road.getFromId(), road.getDistance(), road.getCapacity());
-            graph.computeIfAbsent(road.getToId(), k -> new ArrayList<>()).add(reverseEdge);
-        }
-        return graph;
-    }
-
     private void displayPathInTable(List<String> path, String timeOfDay) {
         tableModel.setRowCount(0);
         double totalDistance = 0;
@@ -683,11 +848,9 @@ public class TrafficSimulation extends JFrame {
             Road road = getRoad(from, to);
             if (road == null) continue;
 
-            String key = from + "-" + to;
-            if (!trafficFlow.containsKey(key)) key = to + "-" + from;
-            Map<String, Integer> traffic = trafficFlow.get(key);
-            double congestion = traffic != null ? calculateCongestion(road.getCapacity(), timeOfDay, traffic) : 0;
-            double travelTime = calculateTravelTime(road.getDistance(), road.getCapacity(), timeOfDay, traffic);
+            int edge = trafficFlow.edge(from, to);
+            double congestion = trafficFlow.hasFlow(edge) ? calculateCongestion(timeOfDay, edge) : 0;
+            double travelTime = calculateTravelTime(road.getDistance(), timeOfDay, edge);
 
             totalDistance += road.getDistance();
             totalTime += travelTime;
@@ -702,35 +865,20 @@ public class TrafficSimulation extends JFrame {
         }
     }
 
-    private double calculateCongestion(int capacity, String timeOfDay, Map<String, Integer> traffic) {
-        double trafficVolume = getTrafficForTime(traffic, timeOfDay);
-        double congestion = capacity > 0 ? trafficVolume / capacity : 1.0;
-        return Math.min(congestion, 1.0);
+    private double calculateCongestion(String timeOfDay, int edge) {
+        return trafficFlow.getWeights().congestion(Period.fromLabel(timeOfDay))[edge];
     }
 
-    private double getTrafficForTime(Map<String, Integer> traffic, String timeOfDay) {
-        if (traffic == null) return 0;
-        switch (timeOfDay) {
-            case "Morning Peak":
-                return traffic.getOrDefault("MorningPeak", 0);
-            case "Afternoon":
-                return traffic.getOrDefault("Afternoon", 0);
-            case "Evening Peak":
-                return traffic.getOrDefault("EveningPeak", 0);
-            case "Night":
-                return traffic.getOrDefault("Night", 0);
-            default:
-                return 0;
-        }
+    private double getTrafficForTime(int edge, String timeOfDay) {
+        return trafficFlow.flow(edge, Period.fromLabel(timeOfDay));
     }
 
-    private double calculateTravelTime(double distance, int capacity, String timeOfDay, Map<String, Integer> traffic) {
-        double baseTime = distance / 60.0 * 60;
-        double congestionFactor = traffic != null ? calculateCongestion(capacity, timeOfDay, traffic) : 0;
-        return baseTime * (1 + congestionFactor);
+    private double calculateTravelTime(double distance, String timeOfDay, int edge) {
+        if (!trafficFlow.hasFlow(edge)) return distance / 60.0 * 60;
+        return trafficFlow.getWeights().travelTimes(WeightProfiles.VehicleProfile.CAR, Period.fromLabel(timeOfDay))[edge];
     }
 
-    private void updateTableWithNewCongestion(Map<String, Double> newTraffic, String timeOfDay) {
+    private void updateTableWithNewCongestion(Map<Road, Double> newTraffic, String timeOfDay) {
         String selectedLine = (String) lineCombo.getSelectedItem();
         List<String> lineStops = transitLines.get(selectedLine);
 
@@ -741,9 +889,8 @@ public class TrafficSimulation extends JFrame {
             Road road = getRoad(from, to);
             if (road == null) continue;
 
-            String key = from + "-" + to;
-            if (!trafficFlow.containsKey(key)) key = to + "-" + from;
-            double trafficVolume = newTraffic.getOrDefault(key, getTrafficForTime(trafficFlow.get(key), timeOfDay));
+            int edge = trafficFlow.edge(from, to);
+            double trafficVolume = edge >= 0 ? newTraffic.getOrDefault(graph.road(edge), getTrafficForTime(edge, timeOfDay)) : 0;
             double congestion = trafficVolume / road.getCapacity();
             if (congestion > 1) congestion = 1;
             double travelTime = road.getDistance() / 60.0 * 60 * (1 + congestion);
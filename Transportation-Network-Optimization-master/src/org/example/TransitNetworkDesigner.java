@@ -5,17 +5,19 @@ import java.util.*;
 public class TransitNetworkDesigner {
     private Map<String, Node> nodes;
     private List<Road> roads;
-    private Map<String, Map<String, Integer>> trafficFlow;
+    private TrafficFlowStore trafficFlow;
     private Map<String, List<String>> transitLines;
     private Map<String, Integer> dailyPassengers;
+    private RoadGraph graph;
 
-    public TransitNetworkDesigner(Map<String, Node> nodes, List<Road> roads, Map<String, Map<String, Integer>> trafficFlow,
+    public TransitNetworkDesigner(Map<String, Node> nodes, List<Road> roads, TrafficFlowStore trafficFlow,
                                   Map<String, List<String>> transitLines, Map<String, Integer> dailyPassengers) {
         this.nodes = nodes;
         this.roads = roads;
         this.trafficFlow = trafficFlow;
         this.transitLines = transitLines;
         this.dailyPassengers = dailyPassengers;
+        this.graph = trafficFlow.getGraph();
     }
 
     /**
@@ -58,11 +60,9 @@ public class TransitNetworkDesigner {
             int connectedRoads = 0;
             for (Road road : roads) {
                 if (road.fromId.equals(nodeId) || road.toId.equals(nodeId)) {
-                    String key = road.fromId + "-" + road.toId;
-                    if (!trafficFlow.containsKey(key)) key = road.toId + "-" + road.fromId;
-                    Map<String, Integer> traffic = trafficFlow.get(key);
-                    if (traffic != null) {
-                        totalCongestion += calculateCongestion(road.getCapacity(), timeOfDay, traffic);
+                    int edge = trafficFlow.edge(road.fromId, road.toId);
+                    if (trafficFlow.hasFlow(edge)) {
+                        totalCongestion += calculateCongestion(timeOfDay, edge);
                         connectedRoads++;
                     }
                 }
@@ -87,17 +87,17 @@ public class TransitNetworkDesigner {
      */
     public Map<String, List<String>> buildIntegratedNetwork(List<String> transferPoints, String timeOfDay) {
         Map<String, List<String>> network = new HashMap<>();
-        Map<String, List<Dijkstra.Edge>> graph = buildGraph(timeOfDay);
+        TravelTimeMatrix matrix = TravelTimeMatrix.forPeriod(trafficFlow, Period.fromLabel(timeOfDay),
+                new EdgeMask(graph), transferPoints, transferPoints);
 
         // ربط كل نقطة نقل بالأخرى
-        for (String point1 : transferPoints) {
+        for (int i = 0; i < transferPoints.size(); i++) {
+            String point1 = transferPoints.get(i);
             List<String> connections = new ArrayList<>();
-            for (String point2 : transferPoints) {
-                if (!point1.equals(point2)) {
-                    Dijkstra.PathResult path = Dijkstra.findShortestPath(graph, point1, point2, timeOfDay, trafficFlow, new ArrayList<>());
-                    if (!path.path.isEmpty()) {
-                        connections.add(point2);
-                    }
+            for (int j = 0; j < transferPoints.size(); j++) {
+                String point2 = transferPoints.get(j);
+                if (!point1.equals(point2) && matrix.isReachable(i, j)) {
+                    connections.add(point2);
                 }
             }
             network.put(point1, connections);
@@ -132,44 +132,13 @@ public class TransitNetworkDesigner {
     }
 
     /**
-     * بناء الـ Graph من الداتا بيز.
+     * الـ Graph (الطرق الموجودة فقط) اللي بيتبني مرة واحدة من الداتا بيز.
      */
-    public Map<String, List<Dijkstra.Edge>> buildGraph(String timeOfDay) {
-        Map<String, List<Dijkstra.Edge>> graph = new HashMap<>();
-        for (Road road : roads) {
-            if (!road.isExisting()) continue;
-            String key = road.fromId + "-" + road.toId;
-            if (!trafficFlow.containsKey(key)) key = road.toId + "-" + road.fromId;
-            Map<String, Integer> traffic = trafficFlow.get(key);
-            double travelTime = calculateTravelTime(road.getDistance(), road.getCapacity(), timeOfDay, traffic);
-            Dijkstra.Edge edge = new Dijkstra.Edge(road.toId, travelTime, road.getCapacity());
-            graph.computeIfAbsent(road.fromId, k -> new ArrayList<>()).add(edge);
-            Dijkstra.Edge reverseEdge = new Dijkstra.Edge(road.fromId, travelTime, road.getCapacity());
-            graph.computeIfAbsent(road.toId, k -> new ArrayList<>()).add(reverseEdge);
-        }
+    public RoadGraph getGraph() {
         return graph;
     }
 
-    private double calculateTravelTime(double distance, int capacity, String timeOfDay, Map<String, Integer> traffic) {
-        double baseTime = distance / 60.0 * 60;
-        double congestionFactor = traffic != null ? calculateCongestion(capacity, timeOfDay, traffic) : 0;
-        return baseTime * (1 + congestionFactor);
-    }
-
-    private double calculateCongestion(int capacity, String timeOfDay, Map<String, Integer> traffic) {
-        double trafficVolume = getTrafficForTime(traffic, timeOfDay);
-        double congestion = capacity > 0 ? trafficVolume / capacity : 1.0;
-        return Math.min(congestion, 1.0);
-    }
-
-    private double getTrafficForTime(Map<String, Integer> traffic, String timeOfDay) {
-        if (traffic == null) return 0;
-        switch (timeOfDay) {
-            case "Morning Peak": return traffic.getOrDefault("MorningPeak", 0);
-            case "Afternoon": return traffic.getOrDefault("Afternoon", 0);
-            case "Evening Peak": return traffic.getOrDefault("EveningPeak", 0);
-            case "Night": return traffic.getOrDefault("Night", 0);
-            default: return 0;
-        }
+    private double calculateCongestion(String timeOfDay, int edge) {
+        return trafficFlow.getWeights().congestion(Period.fromLabel(timeOfDay))[edge];
     }
 }
\ No newline at end of file
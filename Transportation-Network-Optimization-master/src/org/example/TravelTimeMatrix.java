@@ -0,0 +1,187 @@
+package org.example;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Travel times and distances between a set of sources and a set of targets, from one shortest path tree
+ * per source (or per target, searching backwards, when there are fewer targets). The trees are grown in
+ * parallel and each one stops as soon as all of its targets are settled.
+ * Row i is sources[i] and column j is targets[j]; unreachable pairs and unknown nodes are infinite.
+ */
+public class TravelTimeMatrix {
+    private final RoadGraph graph;
+    private final int[] sources;
+    private final int[] targets;
+    private final double[][] times;
+    private final double[][] distances;
+    private final boolean backward;
+    // Per search root: the tree edge into each node (forward) or out of each node (backward), -1 if none
+    private final int[][] trees;
+
+    private TravelTimeMatrix(RoadGraph graph, int[] sources, int[] targets, boolean backward, boolean keepPaths) {
+        this.graph = graph;
+        this.sources = sources;
+        this.targets = targets;
+        this.backward = backward;
+        this.times = new double[sources.length][targets.length];
+        this.distances = new double[sources.length][targets.length];
+        this.trees = keepPaths ? new int[backward ? targets.length : sources.length][] : null;
+        for (int i = 0; i < sources.length; i++) {
+            Arrays.fill(times[i], Double.POSITIVE_INFINITY);
+            Arrays.fill(distances[i], Double.POSITIVE_INFINITY);
+        }
+    }
+
+    /** Car travel times for the period, the same cost model as Dijkstra.findShortestPath. */
+    public static TravelTimeMatrix forPeriod(TrafficFlowStore trafficFlow, Period period, EdgeMask closedEdges,
+                                             List<String> sourceIds, List<String> targetIds) {
+        RoadGraph graph = trafficFlow.getGraph();
+        return compute(graph, Dijkstra.edgeTimes(period, trafficFlow), closedEdges,
+                indices(graph, sourceIds), indices(graph, targetIds), false);
+    }
+
+    public static TravelTimeMatrix compute(RoadGraph graph, double[] weights, EdgeMask closedEdges,
+                                           int[] sources, int[] targets) {
+        return compute(graph, weights, closedEdges, sources, targets, false);
+    }
+
+    /**
+     * Matrix over any per-edge weights (infinite weights and closed edges are never used). Node indices
+     * of -1 give an infinite row or column. With keepPaths set the search trees are kept for path().
+     */
+    public static TravelTimeMatrix compute(RoadGraph graph, double[] weights, EdgeMask closedEdges,
+                                           int[] sources, int[] targets, boolean keepPaths) {
+        boolean backward = targets.length < sources.length;
+        TravelTimeMatrix matrix = new TravelTimeMatrix(graph, sources, targets, backward, keepPaths);
+        int[] roots = backward ? targets : sources;
+        int[] ends = backward ? sources : targets;
+        IntStream.range(0, roots.length).parallel()
+                .forEach(r -> matrix.search(r, roots[r], ends, weights, closedEdges));
+        return matrix;
+    }
+
+    private static int[] indices(RoadGraph graph, List<String> ids) {
+        int[] nodes = new int[ids.size()];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = graph.indexOf(ids.get(i));
+        }
+        return nodes;
+    }
+
+    private void search(int r, int root, int[] ends, double[] weights, EdgeMask closedEdges) {
+        if (root < 0) return;
+        SearchWorkspace ws = SearchWorkspace.get(graph, SearchWorkspace.FORWARD);
+
+        // Ends that still have to be settled are marked; duplicates and unknown nodes are not waited for
+        int remaining = 0;
+        for (int end : ends) {
+            if (end >= 0 && !ws.isMarked(end)) {
+                ws.mark(end);
+                remaining++;
+            }
+        }
+
+        IndexedHeap heap = ws.heap();
+        ws.set(root, 0.0, 0.0, -1);
+        heap.insert(root, 0.0);
+        while (!heap.isEmpty() && remaining > 0) {
+            int u = heap.poll();
+            if (ws.isMarked(u)) remaining--;
+            for (int e = graph.firstEdge(u); e < graph.lastEdge(u); e++) {
+                // Backwards we walk the edge v -> u, which is the reverse of u's outgoing edge
+                int edge = backward ? graph.reverse(e) : e;
+                if (closedEdges.isClosed(edge)) continue;
+                double w = weights[edge];
+                if (w == Double.POSITIVE_INFINITY) continue;
+                int v = graph.target(e);
+                double t = ws.time(u) + w;
+                if (t < ws.time(v)) {
+                    ws.set(v, t, ws.length(u) + graph.length(e), edge);
+                    heap.insertOrDecrease(v, t);
+                }
+            }
+        }
+
+        for (int k = 0; k < ends.length; k++) {
+            if (ends[k] < 0 || !ws.reached(ends[k])) continue;
+            int i = backward ? k : r;
+            int j = backward ? r : k;
+            times[i][j] = ws.time(ends[k]);
+            distances[i][j] = ws.length(ends[k]);
+        }
+        if (trees != null) {
+            int[] tree = new int[graph.nodeCount()];
+            for (int v = 0; v < tree.length; v++) {
+                tree[v] = ws.parent(v);
+            }
+            trees[r] = tree;
+        }
+    }
+
+    public int[] getSources() { return sources; }
+    public int[] getTargets() { return targets; }
+    public double[][] getTimes() { return times; }
+    public double[][] getDistances() { return distances; }
+
+    public double time(int i, int j) { return times[i][j]; }
+    public double distance(int i, int j) { return distances[i][j]; }
+
+    public boolean isReachable(int i, int j) {
+        return times[i][j] != Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Edges of the route from sources[i] to targets[j] in driving order, or null if the pair is unreachable.
+     * Only available when the matrix was computed with keepPaths.
+     */
+    public int[] pathEdges(int i, int j) {
+        if (trees == null) throw new IllegalStateException("Matrix was computed without paths");
+        if (!isReachable(i, j)) return null;
+        List<Integer> edges = new ArrayList<>();
+        if (backward) {
+            int[] tree = trees[j];
+            for (int u = sources[i]; u != targets[j]; u = graph.target(tree[u])) {
+                edges.add(tree[u]);
+            }
+        } else {
+            int[] tree = trees[i];
+            for (int v = targets[j]; v != sources[i]; v = graph.target(graph.reverse(tree[v]))) {
+                edges.add(tree[v]);
+            }
+            Collections.reverse(edges);
+        }
+        int[] path = new int[edges.size()];
+        for (int k = 0; k < path.length; k++) {
+            path[k] = edges.get(k);
+        }
+        return path;
+    }
+
+    /**
+     * True if the search from the given root (sources[root], or targets[root] when searching backwards)
+     * may route over the edge. Raising the weight of or closing an edge no tree uses leaves that root's
+     * times unchanged. Only available when the matrix was computed with keepPaths.
+     */
+    public boolean usesEdge(int root, int edge) {
+        if (trees == null) throw new IllegalStateException("Matrix was computed without paths");
+        int[] tree = trees[root];
+        if (tree == null) return false;
+        return backward ? tree[graph.target(graph.reverse(edge))] == edge : tree[graph.target(edge)] == edge;
+    }
+
+    /** Whether rows (false) or columns (true) were the search roots. */
+    public boolean isBackward() { return backward; }
+
+    /** Node IDs of the route from sources[i] to targets[j], or null if the pair is unreachable. */
+    public List<String> path(int i, int j) {
+        int[] edges = pathEdges(i, j);
+        if (edges == null) return null;
+        List<String> ids = new ArrayList<>(edges.length + 1);
+        ids.add(graph.nodeId(sources[i]));
+        for (int e : edges) {
+            ids.add(graph.nodeId(graph.target(e)));
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,101 @@
+package org.example;
+
+import java.util.Arrays;
+
+/**
+ * Travel time of every edge as a piecewise-linear function of the clock time it is entered at.
+ * All edges share one set of breakpoints over the day, and the values sit in a single float array
+ * (edge * breakpoints + i), so a city graph with four periods costs 16 bytes per edge.
+ * Between the last and the first breakpoint the function wraps around midnight.
+ * Values are trimmed so that no edge has a slope below -1: leaving later never means arriving earlier (FIFO),
+ * which is what lets the time-dependent Dijkstra settle each node once.
+ */
+public class TravelTimeProfile {
+    private final RoadGraph graph;
+    private final double[] breakpoints;
+    private final float[] values;
+
+    /**
+     * breakpoints are minutes after midnight in ascending order within one day; values holds the travel
+     * time of edge e at breakpoint i at e * breakpoints.length + i. Infinite values mean the edge is unusable.
+     */
+    public TravelTimeProfile(RoadGraph graph, double[] breakpoints, float[] values) {
+        if (breakpoints.length == 0 || values.length != graph.edgeCount() * breakpoints.length) {
+            throw new IllegalArgumentException("Expected " + breakpoints.length + " values for each of "
+                    + graph.edgeCount() + " edges");
+        }
+        for (int i = 0; i < breakpoints.length; i++) {
+            if (breakpoints[i] < 0 || breakpoints[i] >= Period.MINUTES_PER_DAY
+                    || (i > 0 && breakpoints[i] <= breakpoints[i - 1])) {
+                throw new IllegalArgumentException("Breakpoints must be ascending minutes within one day");
+            }
+        }
+        this.graph = graph;
+        this.breakpoints = breakpoints.clone();
+        this.values = values.clone();
+        enforceFifo();
+    }
+
+    /** One breakpoint at the middle of each TrafficFlow period, valued at that period's travel time. */
+    public static TravelTimeProfile fromPeriods(TrafficFlowStore trafficFlow, WeightProfiles.VehicleProfile profile) {
+        Period[] periods = Period.values().clone();
+        Arrays.sort(periods, (a, b) -> Double.compare(a.midpoint(), b.midpoint()));
+        RoadGraph graph = trafficFlow.getGraph();
+        int b = periods.length;
+        double[] breakpoints = new double[b];
+        float[] values = new float[graph.edgeCount() * b];
+        for (int i = 0; i < b; i++) {
+            breakpoints[i] = periods[i].midpoint();
+            double[] times = trafficFlow.getWeights().travelTimes(profile, periods[i]);
+            for (int e = 0; e < times.length; e++) {
+                values[e * b + i] = (float) times[e];
+            }
+        }
+        return new TravelTimeProfile(graph, breakpoints, values);
+    }
+
+    // Lowers a value wherever the next breakpoint would otherwise be reached earlier by leaving later.
+    // Two laps round the day let a lowered value carry back across midnight.
+    private void enforceFifo() {
+        int b = breakpoints.length;
+        for (int e = 0; e < graph.edgeCount(); e++) {
+            int base = e * b;
+            for (int k = 2 * b - 1; k >= 0; k--) {
+                int i = k % b;
+                int j = (i + 1) % b;
+                double gap = gap(i);
+                values[base + i] = (float) Math.min(values[base + i], values[base + j] + gap);
+            }
+        }
+    }
+
+    private double gap(int i) {
+        int j = i + 1;
+        return j < breakpoints.length ? breakpoints[j] - breakpoints[i]
+                : breakpoints[0] + Period.MINUTES_PER_DAY - breakpoints[i];
+    }
+
+    public RoadGraph getGraph() { return graph; }
+
+    /** Minutes to traverse the edge when entering it at the given clock time (minutes, any day). */
+    public double travelTime(int edge, double minute) {
+        int b = breakpoints.length;
+        int base = edge * b;
+        if (b == 1) return values[base];
+        double t = minute % Period.MINUTES_PER_DAY;
+        if (t < 0) t += Period.MINUTES_PER_DAY;
+
+        // Segment i runs from breakpoints[i] to the next one; before the first breakpoint we are in the last segment
+        int i = b - 1;
+        for (int k = 0; k < b; k++) {
+            if (breakpoints[k] > t) break;
+            i = k;
+        }
+        double offset = t - breakpoints[i];
+        if (offset < 0) offset += Period.MINUTES_PER_DAY;
+        double from = values[base + i];
+        double to = values[base + (i + 1) % b];
+        if (from == Double.POSITIVE_INFINITY || to == Double.POSITIVE_INFINITY) return Double.POSITIVE_INFINITY;
+        return from + (to - from) * offset / gap(i);
+    }
+}
@@ -0,0 +1,65 @@
+package org.example;
+
+/**
+ * Disjoint sets over the int elements 0..n-1, e.g. the node indices of a RoadGraph.
+ * Union by size keeps the trees shallow and find() halves the path as it walks it, without recursion,
+ * so long chains cannot overflow the stack and every operation is close to constant time.
+ */
+public class UnionFind {
+    private final int[] parent;
+    private final int[] size;
+    private int components;
+
+    public UnionFind(int n) {
+        parent = new int[n];
+        size = new int[n];
+        for (int i = 0; i < n; i++) {
+            parent[i] = i;
+            size[i] = 1;
+        }
+        components = n;
+    }
+
+    public int find(int x) {
+        while (parent[x] != x) {
+            parent[x] = parent[parent[x]];
+            x = parent[x];
+        }
+        return x;
+    }
+
+    /**
+     * Same root as find(), but without shortening the path. Nothing is written, so several threads may
+     * call it at once as long as no union() runs at the same time.
+     */
+    public int root(int x) {
+        while (parent[x] != x) x = parent[x];
+        return x;
+    }
+
+    /** Merges the sets of a and b; false if they were already one set. */
+    public boolean union(int a, int b) {
+        int rootA = find(a);
+        int rootB = find(b);
+        if (rootA == rootB) return false;
+        if (size[rootA] < size[rootB]) {
+            int swap = rootA;
+            rootA = rootB;
+            rootB = swap;
+        }
+        parent[rootB] = rootA;
+        size[rootA] += size[rootB];
+        components--;
+        return true;
+    }
+
+    public boolean connected(int a, int b) {
+        return find(a) == find(b);
+    }
+
+    /** Number of elements in the set of x. */
+    public int size(int x) { return size[find(x)]; }
+
+    /** Number of disjoint sets. */
+    public int count() { return components; }
+}
@@ -0,0 +1,98 @@
+package org.example;
+
+import java.util.Arrays;
+
+/**
+ * Edge congestion and travel times derived from a TrafficFlowStore, materialized once per period
+ * (and per vehicle profile for travel times) the first time they are asked for.
+ * Returned arrays are shared and must not be modified; they are replaced, never updated, when
+ * the incident factors change, so a search that already holds one keeps a consistent view.
+ */
+public class WeightProfiles {
+    // Emergency vehicles are not profiles: their costs add signal delays and priority, see EmergencyRouting.getCost
+    public enum VehicleProfile {
+        CAR(60.0),
+        BUS(50.0);
+
+        private final double speed;
+
+        VehicleProfile(double speed) {
+            this.speed = speed;
+        }
+
+        /** Free-flow speed in km/h. */
+        public double speed() { return speed; }
+    }
+
+    private static final int PERIODS = Period.values().length;
+
+    private final TrafficFlowStore trafficFlow;
+    private final double[] congestionFactors;
+    private final double[][] congestion = new double[PERIODS][];
+    private final double[][][] travelTimes = new double[VehicleProfile.values().length][PERIODS][];
+
+    WeightProfiles(TrafficFlowStore trafficFlow) {
+        this.trafficFlow = trafficFlow;
+        this.congestionFactors = new double[trafficFlow.getGraph().edgeCount()];
+        Arrays.fill(congestionFactors, 1.0);
+    }
+
+    /**
+     * min(volume * incident factor / capacity, 1) for every edge, or 1 where the capacity is unknown.
+     * Roads without a TrafficFlow row use the period average, like TrafficFlowStore.volume.
+     */
+    public synchronized double[] congestion(Period period) {
+        double[] values = congestion[period.ordinal()];
+        if (values == null) {
+            RoadGraph graph = trafficFlow.getGraph();
+            values = new double[graph.edgeCount()];
+            for (int e = 0; e < values.length; e++) {
+                int capacity = graph.capacity(e);
+                values[e] = capacity > 0
+                        ? Math.min(trafficFlow.volume(e, period) * congestionFactors[e] / capacity, 1.0)
+                        : 1.0;
+            }
+            congestion[period.ordinal()] = values;
+        }
+        return values;
+    }
+
+    /**
+     * baseTime * (1 + congestion) in minutes at the profile's speed, or infinity where the road has no
+     * TrafficFlow row, which is how Dijkstra has always treated such roads.
+     */
+    public synchronized double[] travelTimes(VehicleProfile profile, Period period) {
+        double[][] byPeriod = travelTimes[profile.ordinal()];
+        double[] values = byPeriod[period.ordinal()];
+        if (values == null) {
+            RoadGraph graph = trafficFlow.getGraph();
+            double[] congestion = congestion(period);
+            values = new double[graph.edgeCount()];
+            for (int e = 0; e < values.length; e++) {
+                if (!trafficFlow.hasFlow(e)) {
+                    values[e] = Double.POSITIVE_INFINITY;
+                    continue;
+                }
+                double baseTime = graph.length(e) / profile.speed() * 60;
+                values[e] = baseTime * (1 + congestion[e]);
+            }
+            byPeriod[period.ordinal()] = values;
+        }
+        return values;
+    }
+
+    /** Scales the volume on one directed edge, e.g. for a congestion incident. 1.0 clears it. */
+    public synchronized void setCongestionFactor(int edge, double factor) {
+        if (congestionFactors[edge] == factor) return;
+        congestionFactors[edge] = factor;
+        invalidate();
+    }
+
+    /** Drops every materialized array; they are rebuilt on next use. */
+    public synchronized void invalidate() {
+        Arrays.fill(congestion, null);
+        for (double[][] byPeriod : travelTimes) {
+            Arrays.fill(byPeriod, null);
+        }
+    }
+}